@@ -0,0 +1,53 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Synthetic states shaped like real ones: titles in the form's "Name. Dia dd/MM, HHh" style, spread over
+ * {@link #STORES} stores, a few workshops per run sharing one timestamp.
+ */
+final class BenchmarkStates {
+
+    static final int STORES = 20;
+    private static final int PER_RUN = 5;
+
+    private BenchmarkStates() {
+    }
+
+    static WorkshopState state(int entries) {
+        Map<String, WorkshopsRepository.StoreData> stores = new LinkedHashMap<>();
+        for (int i = 0; i < entries; i++) {
+            String store = store(i);
+            String run = "2025-09-01T10:00:00.%06dZ".formatted(i / (STORES * PER_RUN));
+            String title = title(i);
+            stores.computeIfAbsent(store, s -> new WorkshopsRepository.StoreData(new LinkedHashMap<>(), run))
+                    .getWorkshops().put(title, new WorkshopEntry(title, run));
+        }
+        return new WorkshopState(stores, "2025-09-02T10:00:00Z");
+    }
+
+    static String store(int i) {
+        return "Loja " + (i % STORES);
+    }
+
+    static String title(int i) {
+        return "Como aplicar papel de parede %d. Dia %02d/%02d, %dh".formatted(i, 1 + i % 28, 1 + i % 12, 9 + i % 9);
+    }
+
+    /**
+     * The titles of {@code store(0)} in a state of {@code entries}, plus {@code fresh} titles it doesn't have yet.
+     */
+    static List<String> scrapedTitles(int entries, int fresh) {
+        List<String> titles = new ArrayList<>();
+        for (int i = 0; i < entries; i += STORES) {
+            titles.add(title(i));
+        }
+        for (int i = 0; i < fresh; i++) {
+            titles.add(title(entries + i * STORES));
+        }
+        return titles;
+    }
+}
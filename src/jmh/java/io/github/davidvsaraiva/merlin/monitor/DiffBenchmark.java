@@ -0,0 +1,54 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The new-title diff of a run ({@link Main#addNewTitles}) for one store of a state of {@code entries} workshops,
+ * scraping everything it already knows plus {@code fresh} new titles. The new titles are removed again after
+ * every call so each one diffs the same store; that removal is part of the measured time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiffBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int entries;
+
+    @Param({"0", "5"})
+    int fresh;
+
+    private WorkshopsRepository.StoreData store;
+    private List<String> scraped;
+
+    @Setup
+    public void setUp() {
+        store = BenchmarkStates.state(entries).stores().get(BenchmarkStates.store(0));
+        scraped = BenchmarkStates.scrapedTitles(entries, fresh);
+    }
+
+    @Benchmark
+    public int diff() {
+        List<WorkshopEntry> added = Main.addNewTitles(store, scraped, "2025-09-03T10:00:00Z");
+        for (WorkshopEntry entry : added) {
+            store.getWorkshops().remove(entry.title());
+        }
+        return added.size();
+    }
+}
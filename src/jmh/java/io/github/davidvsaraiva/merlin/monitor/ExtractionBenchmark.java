@@ -0,0 +1,100 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+
+/**
+ * Reading Loulé's workshop labels from the static copy of the form in {@code example.html}.
+ * <p>
+ * {@code jsoup} parses the page and reads the labels the way {@code FETCH_ENGINE=http} does. {@code browser}
+ * reads them from a loaded page in headless Chrome with the script {@link FormWatcher} uses; its setup fails
+ * when no browser can be started, which skips it and keeps the parser result.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtractionBenchmark {
+
+    private static final String EXAMPLE = "/io/github/davidvsaraiva/merlin/monitor/example.html";
+    private static final String STORE = "Loulé";
+
+    @Param({"jsoup", "browser"})
+    String engine;
+
+    private String html;
+    private HttpFormFetcher fetcher;
+    private WebDriver driver;
+
+    @Setup
+    public void setUp() throws IOException, URISyntaxException {
+        URL example = ExtractionBenchmark.class.getResource(EXAMPLE);
+        try (InputStream in = example.openStream()) {
+            html = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        if ("jsoup".equals(engine)) {
+            fetcher = new HttpFormFetcher(example.toString(), new NoFallback());
+            return;
+        }
+        try {
+            driver = FormWatcher.createWebDriver();
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("No headless browser available, only the parser is measured", e);
+        }
+        driver.get(example.toURI().toString());
+        ((JavascriptExecutor) driver).executeScript(PageScripts.SELECT_STORE, driver.findElement(By.id("QR~QID18")), STORE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (driver != null) {
+            driver.quit();
+        }
+    }
+
+    @Benchmark
+    public List<String> extract() {
+        if (driver != null) {
+            return FormWatcher.readWorkshops(driver, STORE).titles();
+        }
+        return fetcher.parse(Jsoup.parse(html), STORE).orElseThrow();
+    }
+
+    private static final class NoFallback implements WorkshopSource {
+        @Override
+        public List<String> fetchWorkshopsForStore(String storeName) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, List<String>> fetchWorkshopsForStores(Collection<String> storeNames) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link WorkshopsRepository#loadOrCreate()} and {@link WorkshopsRepository#save} on states of 1k to 100k
+ * workshops. {@code coldLoad} reads the file with a new repository every time, as a {@code --once} run does;
+ * {@code cachedLoad} is a scheduled run finding the file unchanged.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int entries;
+
+    @Param({"JSON", "SMILE"})
+    StateCodec codec;
+
+    private Path dir;
+    private Path file;
+    private WorkshopState state;
+    private WorkshopsRepository cached;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("repository-bench");
+        file = dir.resolve("workshops.json");
+        state = BenchmarkStates.state(entries);
+        new WorkshopsRepository(file, false, 0, 0, codec).save(state);
+        cached = new WorkshopsRepository(file, false, 0, 0, codec);
+        cached.loadOrCreate();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        cached.close();
+        try (var files = Files.list(dir)) {
+            for (Path p : files.toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public WorkshopState coldLoad() throws IOException {
+        return new WorkshopsRepository(file, false, 0, 0, codec).loadOrCreate();
+    }
+
+    @Benchmark
+    public WorkshopState cachedLoad() throws IOException {
+        return cached.loadOrCreate();
+    }
+
+    @Benchmark
+    public void save() throws IOException {
+        cached.save(state);
+    }
+}
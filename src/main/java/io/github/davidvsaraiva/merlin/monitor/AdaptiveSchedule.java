@@ -0,0 +1,208 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static io.github.davidvsaraiva.merlin.monitor.Config.getEnvOrDefault;
+
+/**
+ * Per store check intervals learned from how often new workshops show up ({@code SCHEDULE_MODE=adaptive}).
+ * <p>
+ * A check that finds something halves the store's interval, a check that finds nothing stretches it by half,
+ * always within {@code [min, max]}. Every next check is jittered so stores and restarts don't line up, and moved
+ * to the start of the next time-of-day window when it would fall outside it. Stores due at about the same time
+ * are checked together since one page load covers all of them. The learned intervals are kept in
+ * {@code <state file>.schedule}.
+ */
+public class AdaptiveSchedule {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveSchedule.class);
+
+    private static final double SHRINK = 0.5;
+    private static final double GROW = 1.5;
+    private static final Duration MAX_GROUPING = Duration.ofMinutes(5);
+
+    /**
+     * Learned state of one store, as persisted.
+     */
+    public record StoreSchedule(long intervalMillis, long nextRunAt) {
+    }
+
+    private final Path file;
+    private final Duration min;
+    private final Duration max;
+    private final Duration initial;
+    private final double jitter;
+    private final LocalTime windowStart;
+    private final LocalTime windowEnd;
+    private final ZoneId zone;
+    private final Random random;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, StoreSchedule> stores = new LinkedHashMap<>();
+
+    /**
+     * @param window "HH:mm-HH:mm" in {@code zone} (may wrap past midnight), or {@code null} for any time
+     */
+    public AdaptiveSchedule(Path file, Collection<String> storeNames, Duration min, Duration max, Duration initial,
+            double jitter, String window, ZoneId zone, Random random, Instant now) {
+        if (min.compareTo(max) > 0) {
+            throw new IllegalArgumentException("Minimum interval " + min + " is above the maximum " + max);
+        }
+        this.file = file;
+        this.min = min;
+        this.max = max;
+        this.initial = clamp(initial.toMillis());
+        this.jitter = jitter;
+        if (window == null || window.isBlank()) {
+            this.windowStart = null;
+            this.windowEnd = null;
+        } else {
+            String[] bounds = window.trim().split("-");
+            if (bounds.length != 2) {
+                throw new IllegalArgumentException("Expected a window like 07:00-23:00 but got " + window);
+            }
+            this.windowStart = LocalTime.parse(bounds[0].trim());
+            this.windowEnd = LocalTime.parse(bounds[1].trim());
+        }
+        this.zone = zone;
+        this.random = random;
+        Map<String, StoreSchedule> persisted = load();
+        for (String store : storeNames) {
+            StoreSchedule known = persisted.get(store);
+            // stores we know nothing about are checked right away
+            stores.put(store, known != null
+                    ? new StoreSchedule(clamp(known.intervalMillis()).toMillis(), known.nextRunAt())
+                    : new StoreSchedule(this.initial.toMillis(), inWindow(now).toEpochMilli()));
+        }
+    }
+
+    public static AdaptiveSchedule fromEnv(Path statePath, Collection<String> stores, Duration initial) {
+        Duration min = Duration.ofMinutes(Long.parseLong(getEnvOrDefault("ADAPTIVE_MIN_MINUTES", "30")));
+        Duration max = Duration.ofMinutes(Long.parseLong(getEnvOrDefault("ADAPTIVE_MAX_MINUTES", "720")));
+        double jitter = Double.parseDouble(getEnvOrDefault("ADAPTIVE_JITTER", "0.1"));
+        String window = getEnvOrDefault("SCHEDULE_WINDOW", null);
+        return new AdaptiveSchedule(statePath.resolveSibling(statePath.getFileName() + ".schedule"), stores,
+                min, max, initial, jitter, window, ZoneId.systemDefault(), new Random(), Instant.now());
+    }
+
+    /**
+     * Stores due at {@code now}, plus the ones due shortly after so they share the page load.
+     */
+    public synchronized List<String> due(Instant now) {
+        long grouping = Math.min(MAX_GROUPING.toMillis(), min.toMillis() / 2);
+        List<String> due = new ArrayList<>();
+        stores.forEach((store, s) -> {
+            if (s.nextRunAt() <= now.toEpochMilli() + grouping) {
+                due.add(store);
+            }
+        });
+        return due;
+    }
+
+    public synchronized Instant nextDue() {
+        return Instant.ofEpochMilli(stores.values().stream().mapToLong(StoreSchedule::nextRunAt).min().orElse(Long.MAX_VALUE));
+    }
+
+    /**
+     * Learns from a check of {@code checked}: {@code newPerStore} holds how many new workshops each store had.
+     * Stores missing from it failed; they keep their interval and are retried after the minimum.
+     */
+    public synchronized void record(Collection<String> checked, Map<String, Integer> newPerStore, Instant now) {
+        for (String store : checked) {
+            StoreSchedule current = stores.get(store);
+            if (current == null) {
+                continue;
+            }
+            Integer found = newPerStore.get(store);
+            long interval = current.intervalMillis();
+            Duration wait;
+            if (found == null) {
+                wait = min;
+            } else {
+                interval = clamp((long) (interval * (found > 0 ? SHRINK : GROW))).toMillis();
+                wait = Duration.ofMillis(interval);
+            }
+            Instant next = inWindow(now.plus(jittered(wait)));
+            stores.put(store, new StoreSchedule(interval, next.toEpochMilli()));
+            LOG.debug("Store {}: {} new, interval {} min, next check at {}", store, found,
+                    Duration.ofMillis(interval).toMinutes(), next);
+        }
+        persist();
+    }
+
+    public synchronized Map<String, StoreSchedule> snapshot() {
+        return Map.copyOf(stores);
+    }
+
+    private Duration jittered(Duration wait) {
+        double factor = 1 + jitter * (2 * random.nextDouble() - 1);
+        return Duration.ofMillis((long) (wait.toMillis() * factor));
+    }
+
+    private Duration clamp(long millis) {
+        return Duration.ofMillis(Math.max(min.toMillis(), Math.min(max.toMillis(), millis)));
+    }
+
+    /**
+     * {@code t} itself when it's inside the window, otherwise the start of the next window.
+     */
+    Instant inWindow(Instant t) {
+        if (windowStart == null) {
+            return t;
+        }
+        ZonedDateTime local = t.atZone(zone);
+        LocalTime time = local.toLocalTime();
+        boolean inside = windowStart.isBefore(windowEnd)
+                ? !time.isBefore(windowStart) && time.isBefore(windowEnd)
+                : !time.isBefore(windowStart) || time.isBefore(windowEnd);
+        if (inside) {
+            return t;
+        }
+        ZonedDateTime start = local.with(windowStart);
+        if (!start.isAfter(local)) {
+            start = start.plusDays(1);
+        }
+        return start.toInstant();
+    }
+
+    private Map<String, StoreSchedule> load() {
+        if (file == null || !Files.exists(file)) {
+            return Map.of();
+        }
+        try {
+            return mapper.readValue(file.toFile(), new TypeReference<LinkedHashMap<String, StoreSchedule>>() {
+            });
+        } catch (IOException e) {
+            LOG.warn("Cannot read schedule {}; starting from the initial interval", file, e);
+            return Map.of();
+        }
+    }
+
+    private void persist() {
+        if (file == null) {
+            return;
+        }
+        try {
+            WorkshopsRepository.writeAtomically(file, mapper.writeValueAsBytes(stores));
+        } catch (IOException e) {
+            LOG.warn("Cannot save schedule {}", file, e);
+        }
+    }
+}
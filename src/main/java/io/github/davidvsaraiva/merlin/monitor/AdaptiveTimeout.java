@@ -0,0 +1,103 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A timeout derived from how long the same wait took recently: a multiple of the 95th percentile of the
+ * last samples, kept within {@code [min, max]}. Until enough samples exist the initial timeout is used.
+ * <p>
+ * The samples can be kept in a file with {@link #load} and {@link #save}, so a process that only runs once
+ * ({@code --once} from a timer) starts from what the previous runs learnt.
+ */
+public class AdaptiveTimeout {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveTimeout.class);
+
+    private static final int MIN_SAMPLES = 3;
+    private static final double MULTIPLIER = 3.0;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Duration initial;
+    private final Duration min;
+    private final Duration max;
+    private final long[] samples;
+    private int count;
+    private int next;
+
+    public AdaptiveTimeout(Duration initial, Duration min, Duration max, int window) {
+        this.initial = initial;
+        this.min = min;
+        this.max = max;
+        this.samples = new long[window];
+    }
+
+    public synchronized void record(Duration observed) {
+        samples[next] = observed.toMillis();
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+    }
+
+    public synchronized Duration current() {
+        if (count < MIN_SAMPLES) {
+            return initial;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        long p95 = sorted[(int) Math.ceil(0.95 * count) - 1];
+        long millis = (long) (p95 * MULTIPLIER);
+        return Duration.ofMillis(Math.max(min.toMillis(), Math.min(max.toMillis(), millis)));
+    }
+
+    /**
+     * @return the samples in milliseconds, oldest first
+     */
+    synchronized List<Long> samples() {
+        Long[] ordered = new Long[count];
+        for (int i = 0; i < count; i++) {
+            ordered[i] = samples[(next - count + i + samples.length) % samples.length];
+        }
+        return List.of(ordered);
+    }
+
+    /**
+     * Records the samples of each timeout saved in {@code file}, by name; a missing or unreadable file leaves
+     * them as they are.
+     */
+    static void load(Path file, Map<String, AdaptiveTimeout> timeouts) {
+        if (!Files.exists(file)) {
+            return;
+        }
+        Map<String, List<Long>> saved;
+        try {
+            saved = MAPPER.readValue(file.toFile(), new TypeReference<LinkedHashMap<String, List<Long>>>() {
+            });
+        } catch (IOException e) {
+            LOG.warn("Cannot read timeouts {}; starting from the initial timeouts", file, e);
+            return;
+        }
+        timeouts.forEach((name, timeout) -> saved.getOrDefault(name, List.of())
+                .forEach(millis -> timeout.record(Duration.ofMillis(millis))));
+    }
+
+    static void save(Path file, Map<String, AdaptiveTimeout> timeouts) {
+        Map<String, List<Long>> samples = new LinkedHashMap<>();
+        timeouts.forEach((name, timeout) -> samples.put(name, timeout.samples()));
+        try {
+            WorkshopsRepository.writeAtomically(file, MAPPER.writeValueAsBytes(samples));
+        } catch (IOException e) {
+            LOG.warn("Cannot save timeouts {}", file, e);
+        }
+    }
+}
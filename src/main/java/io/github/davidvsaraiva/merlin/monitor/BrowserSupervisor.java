@@ -0,0 +1,345 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeDriverService;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.remote.http.ClientConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static io.github.davidvsaraiva.merlin.monitor.Config.getEnvOrDefault;
+
+/**
+ * Keeps browser processes from outliving their purpose.
+ * <p>
+ * Every WebDriver command is bounded ({@code BROWSER_PAGE_LOAD_TIMEOUT_SECONDS} for page loads, plus the
+ * HTTP read timeout of the driver connection), and a whole scrape by {@code SCRAPE_DEADLINE_SECONDS}: when
+ * the deadline passes, chromedriver and every browser process below it are killed, which fails the blocked
+ * call. Sessions are started by {@link SupervisedChromeDriver}, which knows its chromedriver process, kills
+ * what is left of the tree on quit and deletes its temporary profile right away instead of at JVM exit.
+ * <p>
+ * At startup, browsers left behind by a crashed process (parent gone, now owned by init) are killed and
+ * stale {@code selenium-chrome-profile-*} directories are deleted. Only processes of the current user that run on
+ * one of our profiles, or a chromedriver whose browser does, are ever taken for ours. {@code BROWSER_MEMORY_LIMIT_MB} recycles a
+ * session whose process tree grew past the limit, and with {@code BROWSER_CGROUP} (a writable cgroup v2
+ * directory) also moves the browser into that cgroup with the limit as {@code memory.max}, so the kernel
+ * enforces it.
+ */
+final class BrowserSupervisor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BrowserSupervisor.class);
+
+    static final Duration PAGE_LOAD_TIMEOUT =
+            Duration.ofSeconds(Long.parseLong(getEnvOrDefault("BROWSER_PAGE_LOAD_TIMEOUT_SECONDS", "60")));
+    static final Duration SCRAPE_DEADLINE =
+            Duration.ofSeconds(Long.parseLong(getEnvOrDefault("SCRAPE_DEADLINE_SECONDS", "300")));
+    static final long MEMORY_LIMIT_MB = Long.parseLong(getEnvOrDefault("BROWSER_MEMORY_LIMIT_MB", "0"));
+    private static final String CGROUP = getEnvOrDefault("BROWSER_CGROUP", null);
+
+    static final String PROFILE_PREFIX = "selenium-chrome-profile-";
+    // a profile is created a moment before its browser starts; don't take a starting one for stale
+    private static final Duration STALE_PROFILE_AGE = Duration.ofMinutes(10);
+    // on top of the longest command timeout, for the driver to answer
+    private static final Duration COMMAND_MARGIN = Duration.ofSeconds(30);
+
+    private BrowserSupervisor() {
+    }
+
+    private static final class Timer {
+        static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "browser-deadline");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    static void applyTimeouts(ChromeOptions opts) {
+        opts.setPageLoadTimeout(PAGE_LOAD_TIMEOUT);
+    }
+
+    /**
+     * The driver connection, timing out after the longest command ({@code scriptTimeout} or the page load).
+     */
+    static ClientConfig clientConfig(Duration scriptTimeout) {
+        Duration longest = scriptTimeout.compareTo(PAGE_LOAD_TIMEOUT) > 0 ? scriptTimeout : PAGE_LOAD_TIMEOUT;
+        return ClientConfig.defaultConfig().readTimeout(longest.plus(COMMAND_MARGIN));
+    }
+
+    /**
+     * Calls {@code onExpiry} once {@code limit} has passed, unless the deadline is closed before.
+     */
+    static Deadline deadline(Duration limit, Runnable onExpiry) {
+        return new Deadline(limit, onExpiry);
+    }
+
+    /**
+     * Kills the browser of {@code driver} once {@code limit} has passed, so a call stuck in it fails.
+     */
+    static Deadline deadline(WebDriver driver, Duration limit) {
+        return deadline(limit, () -> {
+            LOG.warn("Browser still busy after {}, killing it", limit);
+            if (driver instanceof SupervisedChromeDriver supervised) {
+                supervised.kill();
+            } else {
+                driver.quit();
+            }
+        });
+    }
+
+    /**
+     * Whether a session should be recycled instead of going back to the pool.
+     */
+    static boolean overMemoryLimit(WebDriver driver) {
+        if (MEMORY_LIMIT_MB <= 0 || !(driver instanceof SupervisedChromeDriver supervised)) {
+            return false;
+        }
+        long rssMb = supervised.rssMb();
+        if (rssMb <= MEMORY_LIMIT_MB) {
+            return false;
+        }
+        LOG.info("Browser uses {} MB, more than BROWSER_MEMORY_LIMIT_MB={}", rssMb, MEMORY_LIMIT_MB);
+        return true;
+    }
+
+    /**
+     * Kills {@code root} and everything below it. Descendants are collected first: once the root is gone they
+     * are re-parented and no longer found through it.
+     */
+    static void killTree(ProcessHandle root) {
+        List<ProcessHandle> tree = new ArrayList<>();
+        tree.add(root);
+        tree.addAll(root.descendants().toList());
+        tree.forEach(ProcessHandle::destroyForcibly);
+    }
+
+    /**
+     * Resident memory of {@code root} and its descendants, from {@code /proc}; 0 where that isn't available.
+     */
+    static long rssMb(ProcessHandle root) {
+        return Stream.concat(Stream.of(root), root.descendants())
+                .mapToLong(BrowserSupervisor::rssKb)
+                .sum() / 1024;
+    }
+
+    private static long rssKb(ProcessHandle process) {
+        try (Stream<String> lines = Files.lines(Path.of("/proc", Long.toString(process.pid()), "status"))) {
+            return lines.filter(l -> l.startsWith("VmRSS:"))
+                    .map(l -> l.replaceAll("\\D", ""))
+                    .mapToLong(Long::parseLong)
+                    .findFirst()
+                    .orElse(0);
+        } catch (IOException | RuntimeException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Kills browsers a previous, crashed process left behind and deletes unused temporary profiles.
+     */
+    static void reapOrphans() {
+        ProcessHandle self = ProcessHandle.current();
+        Set<Long> ours = self.descendants().map(ProcessHandle::pid).collect(Collectors.toSet());
+        Optional<String> user = self.info().user();
+        List<String> commandLines = new ArrayList<>();
+        ProcessHandle.allProcesses().forEach(p -> {
+            String commandLine = commandLine(p);
+            commandLines.add(commandLine);
+            // another user's processes are never ours, whatever they look like
+            if (p.pid() == self.pid() || ours.contains(p.pid()) || user.isEmpty() || !user.equals(p.info().user())) {
+                return;
+            }
+            String command = p.info().command().orElse("");
+            Optional<String> parent = p.parent().map(pp -> pp.pid() == 1 ? "init" : pp.info().command().orElse(""));
+            List<String> children = p.children().map(BrowserSupervisor::commandLine).toList();
+            if (isOrphanedBrowser(command, commandLine, parent, children)) {
+                LOG.warn("Killing orphaned browser process {} ({})", p.pid(), command);
+                killTree(p);
+            }
+        });
+        Path tmp = Path.of(System.getProperty("java.io.tmpdir"));
+        int removed = deleteStaleProfiles(tmp, STALE_PROFILE_AGE,
+                dir -> commandLines.stream().anyMatch(c -> c.contains(dir.toString())));
+        if (removed > 0) {
+            LOG.info("Deleted {} stale browser profiles from {}", removed, tmp);
+        }
+    }
+
+    /**
+     * A browser on one of our profiles, or a chromedriver driving one, whose parent is gone or is init (or a user
+     * session manager that adopts orphans): its owner died without quitting it. A chromedriver carries no marker
+     * of its own, so one whose browser is gone, or runs on someone else's profile, is left alone.
+     *
+     * @param childCommandLines the command lines of the process's children
+     */
+    static boolean isOrphanedBrowser(String command, String commandLine, Optional<String> parentCommand,
+            List<String> childCommandLines) {
+        boolean adopted = parentCommand.map(BrowserSupervisor::baseName)
+                .map(p -> p.equals("init") || p.equals("systemd"))
+                .orElse(true);
+        if (!adopted) {
+            return false;
+        }
+        if (baseName(command).equals("chromedriver")) {
+            return commandLine.contains("--port=") && childCommandLines.stream().anyMatch(BrowserSupervisor::onOurProfile);
+        }
+        return onOurProfile(commandLine);
+    }
+
+    private static boolean onOurProfile(String commandLine) {
+        return commandLine.contains("--user-data-dir=")
+                && (commandLine.contains(PROFILE_PREFIX) || commandLine.contains(LeanBrowser.PROFILE_DIR.toString()));
+    }
+
+    /**
+     * Deletes the {@code selenium-chrome-profile-*} directories under {@code tmp} older than {@code minAge}
+     * that no running process uses.
+     *
+     * @return the number of directories deleted
+     */
+    static int deleteStaleProfiles(Path tmp, Duration minAge, Predicate<Path> inUse) {
+        Instant cutoff = Instant.now().minus(minAge);
+        int removed = 0;
+        try (Stream<Path> dirs = Files.list(tmp)) {
+            for (Path dir : dirs.filter(d -> d.getFileName().toString().startsWith(PROFILE_PREFIX)).toList()) {
+                try {
+                    if (Files.isDirectory(dir) && Files.getLastModifiedTime(dir).toInstant().isBefore(cutoff)
+                            && !inUse.test(dir)) {
+                        deleteRecursively(dir);
+                        removed++;
+                    }
+                } catch (IOException e) {
+                    LOG.debug("Could not delete stale profile {}", dir, e);
+                }
+            }
+        } catch (IOException e) {
+            LOG.debug("Could not list {}", tmp, e);
+        }
+        return removed;
+    }
+
+    static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    private static String commandLine(ProcessHandle process) {
+        ProcessHandle.Info info = process.info();
+        return info.commandLine().orElseGet(() -> info.command().orElse(""));
+    }
+
+    private static String baseName(String command) {
+        return command.substring(command.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Moves the browser processes into {@code BROWSER_CGROUP}, which caps them at {@code BROWSER_MEMORY_LIMIT_MB}.
+     * Processes the browser starts later inherit the cgroup.
+     */
+    private static void confine(ProcessHandle root) {
+        if (CGROUP == null || CGROUP.isBlank()) {
+            return;
+        }
+        Path cgroup = Path.of(CGROUP);
+        try {
+            if (MEMORY_LIMIT_MB > 0) {
+                Files.writeString(cgroup.resolve("memory.max"), Long.toString(MEMORY_LIMIT_MB * 1024 * 1024));
+            }
+            for (ProcessHandle p : Stream.concat(Stream.of(root), root.descendants()).toList()) {
+                Files.writeString(cgroup.resolve("cgroup.procs"), Long.toString(p.pid()));
+            }
+        } catch (IOException e) {
+            LOG.warn("Cannot move the browser into cgroup {}", cgroup, e);
+        }
+    }
+
+    static final class Deadline implements AutoCloseable {
+
+        private final ScheduledFuture<?> timer;
+        private volatile boolean expired;
+
+        private Deadline(Duration limit, Runnable onExpiry) {
+            this.timer = Timer.INSTANCE.schedule(() -> {
+                expired = true;
+                try {
+                    onExpiry.run();
+                } catch (RuntimeException e) {
+                    LOG.warn("Failed to stop the browser after its deadline", e);
+                }
+            }, limit.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        boolean expired() {
+            return expired;
+        }
+
+        @Override
+        public void close() {
+            timer.cancel(false);
+        }
+    }
+
+    /**
+     * A Chrome session that knows its chromedriver process. {@code cleanup} runs once the browser is gone,
+     * e.g. to release or delete its profile.
+     */
+    static final class SupervisedChromeDriver extends ChromeDriver {
+
+        private final Optional<ProcessHandle> process;
+        private final List<Runnable> cleanup;
+
+        SupervisedChromeDriver(ChromeDriverService service, ChromeOptions options, ClientConfig clientConfig,
+                List<Runnable> cleanup) {
+            super(service, options, clientConfig);
+            this.cleanup = cleanup;
+            // chromedriver is started by this JVM with the service port on its command line
+            String port = "--port=" + service.getUrl().getPort();
+            this.process = ProcessHandle.current().children()
+                    .filter(p -> commandLine(p).contains(port))
+                    .findFirst();
+            if (process.isEmpty()) {
+                LOG.debug("chromedriver process not found; the deadline can only quit the session");
+            }
+            process.ifPresent(BrowserSupervisor::confine);
+        }
+
+        void kill() {
+            process.ifPresentOrElse(BrowserSupervisor::killTree, super::quit);
+        }
+
+        long rssMb() {
+            return process.map(BrowserSupervisor::rssMb).orElse(0L);
+        }
+
+        @Override
+        public void quit() {
+            try {
+                super.quit();
+            } finally {
+                process.filter(ProcessHandle::isAlive).ifPresent(BrowserSupervisor::killTree);
+                cleanup.forEach(Runnable::run);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@code --cds-training}: goes through a {@code --once} run without network, browser or mail server, so that
+ * {@code -XX:ArchiveClassesAtExit} records the classes a real run loads.
+ * <p>
+ * Two runs against a state in a temporary directory, one finding new workshops and one finding none, with the
+ * workshops parsed from a built-in copy of the form's markup. The notifications are turned into mail messages
+ * but not sent, and the browser flags are built without starting a browser.
+ */
+final class CdsTraining {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CdsTraining.class);
+
+    private static final String FORM_URL = "https://example.invalid/form";
+    private static final List<String> STORES = List.of("Loulé", "Albufeira");
+
+    private static final String PAGE = """
+            <html><body><form>
+              <select id="QR~QID18"><option></option><option>Loulé</option><option>Albufeira</option></select>
+              <div class="QuestionOuter"><div class="QuestionText">Workshops Loulé</div>
+                <ul class="ChoiceStructure">
+                  <li class="Selection"><span class="LabelWrapper"><label>Como aplicar papel de parede. Dia 27/09, 10h.</label></span></li>
+                  <li class="Selection"><span class="LabelWrapper"><label>Pintura de móveis. Dia 04/10, 15h.</label></span></li>
+                </ul></div>
+              <div class="QuestionOuter"><div class="QuestionText">Workshops Albufeira</div>
+                <ul class="ChoiceStructure">
+                  <li class="Selection"><span class="LabelWrapper"><label>Montagem de prateleiras. Dia 11/10, 11h.</label></span></li>
+                </ul></div>
+            </form></body></html>
+            """;
+
+    private CdsTraining() {
+    }
+
+    static void run() throws Exception {
+        Path dir = Files.createTempDirectory("merlin-cds");
+        try {
+            Path statePath = dir.resolve("workshops.json");
+            EmailNotifier mail = new EmailNotifier("localhost", 25, true, "", "", "monitor@localhost",
+                    List.of("monitor@localhost"));
+            NotificationOutbox outbox = NotificationOutbox.fromEnv(statePath, items -> {
+                for (NotificationOutbox.Item item : items) {
+                    mail.newMessage("Novos workshops (" + items.size() + ")", item.title()).saveChanges();
+                }
+            });
+            WebDriverPool pool = WebDriverPool.fromEnv(() -> {
+                throw new IllegalStateException("No browser during CDS training");
+            });
+            StoreScraper scraper = StoreScraper.fromEnv(new Offline(), pool.maxSize());
+            try (MonitorTarget target = new MonitorTarget("cds-training", FORM_URL, STORES,
+                    WorkshopsRepository.fromEnv(statePath), scraper, outbox, pool, state -> { })) {
+                Main.runOnce(target, STORES);
+                outbox.flush();
+                Main.runOnce(target, STORES);
+            } finally {
+                pool.close();
+            }
+            FormWatcher.chromeOptions();
+            HttpFormFetcher.newClient();
+            LOG.info("CDS training finished");
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    /**
+     * Parses {@link #PAGE} the way {@code FETCH_ENGINE=http} parses the live form.
+     */
+    private static final class Offline implements WorkshopSource {
+
+        private final HttpFormFetcher parser = new HttpFormFetcher(FORM_URL, (HttpClient) null, this);
+
+        @Override
+        public List<String> fetchWorkshopsForStore(String storeName) {
+            return fetchWorkshopsForStores(List.of(storeName)).get(storeName);
+        }
+
+        @Override
+        public Map<String, List<String>> fetchWorkshopsForStores(Collection<String> storeNames) {
+            Document page = Jsoup.parse(PAGE, FORM_URL);
+            Map<String, List<String>> result = new LinkedHashMap<>();
+            for (String store : storeNames) {
+                result.put(store, parser.parse(page, store).orElseThrow());
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static io.github.davidvsaraiva.merlin.monitor.Config.getEnvOrDefault;
+
+/**
+ * Lets a running monitor be driven from the same machine, reusing its warm JVM and browsers:
+ * <ul>
+ *     <li>{@code POST /run} runs every store, {@code POST /run?store=loule} (repeatable, accents and case
+ *     don't matter) only some; with {@code &wait=true} the response comes when the run is done and carries
+ *     its outcome</li>
+ *     <li>{@code GET /status} shows the run in progress, the queued one and the last one</li>
+ *     <li>{@code POST /cancel} stops the run in progress</li>
+ * </ul>
+ * Requests are coalesced by the {@link RunCoordinator}. The server listens on the loopback address unless
+ * {@code CONTROL_BIND} says otherwise and has no authentication.
+ */
+public class ControlServer implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ControlServer.class);
+
+    private final InetSocketAddress address;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private RunCoordinator runs;
+    private HttpServer server;
+    private ExecutorService handlers;
+
+    public ControlServer(InetSocketAddress address) {
+        this.address = address;
+    }
+
+    /**
+     * A server configured from {@code CONTROL_PORT} and {@code CONTROL_BIND}; empty when no port is set.
+     */
+    public static Optional<ControlServer> fromEnv() {
+        String port = getEnvOrDefault("CONTROL_PORT", null);
+        if (port == null || port.isBlank()) {
+            return Optional.empty();
+        }
+        String bind = getEnvOrDefault("CONTROL_BIND", "127.0.0.1");
+        return Optional.of(new ControlServer(new InetSocketAddress(bind, Integer.parseInt(port.trim()))));
+    }
+
+    public synchronized void start(RunCoordinator runs) throws IOException {
+        this.runs = runs;
+        server = HttpServer.create(address, 0);
+        // a few threads: a waiting /run request must not hold up /status or /cancel
+        handlers = Executors.newFixedThreadPool(4, r -> {
+            Thread t = new Thread(r, "control");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(handlers);
+        server.createContext("/run", exchange -> handle(exchange, "POST", this::run));
+        server.createContext("/status", exchange -> handle(exchange, "GET", e -> respond(e, 200, runs.status())));
+        server.createContext("/cancel", exchange -> handle(exchange, "POST",
+                e -> respond(e, 200, Map.of("cancelled", runs.cancel()))));
+        server.start();
+        LOG.info("Control endpoint on http://{}:{} (/run, /status, /cancel)", address.getHostString(), port());
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    private void handle(HttpExchange exchange, String method, Handler handler) throws IOException {
+        try (exchange) {
+            if (!method.equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", method);
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            if (!exchange.getHttpContext().getPath().equals(exchange.getRequestURI().getPath())) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            handler.handle(exchange);
+        } catch (RuntimeException e) {
+            LOG.warn("Control request failed", e);
+        }
+    }
+
+    private void run(HttpExchange exchange) throws IOException {
+        Map<String, List<String>> query = query(exchange.getRequestURI().getRawQuery());
+        List<String> stores = new ArrayList<>();
+        List<String> unknown = new ArrayList<>();
+        for (String requested : query.getOrDefault("store", List.of())) {
+            // ?store=loule is Loulé
+            runs.stores().stream()
+                    .filter(s -> WorkshopTitle.key(s).equals(WorkshopTitle.key(requested)))
+                    .findFirst()
+                    .ifPresentOrElse(stores::add, () -> unknown.add(requested));
+        }
+        if (!unknown.isEmpty()) {
+            respond(exchange, 400, Map.of("error", "Unknown stores " + unknown, "stores", runs.stores()));
+            return;
+        }
+        CompletableFuture<RunCoordinator.Run> run = runs.trigger(stores);
+        if (!query.getOrDefault("wait", List.of()).contains("true")) {
+            respond(exchange, 202, runs.status());
+            return;
+        }
+        try {
+            respond(exchange, 200, run.get());
+        } catch (ExecutionException e) {
+            respond(exchange, 503, Map.of("error", String.valueOf(e.getCause().getMessage())));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, Map.of("error", "Interrupted"));
+        }
+    }
+
+    private static Map<String, List<String>> query(String raw) {
+        Map<String, List<String>> params = new LinkedHashMap<>();
+        if (raw == null || raw.isEmpty()) {
+            return params;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.computeIfAbsent(name, n -> new ArrayList<>()).add(value);
+        }
+        return params;
+    }
+
+    private void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] json = mapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, json.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(json);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(0);
+            handlers.shutdownNow();
+            server = null;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package io.github.davidvsaraiva.merlin.monitor;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Properties;
 
 import org.slf4j.Logger;
@@ -10,6 +13,7 @@ import jakarta.mail.Authenticator;
 import jakarta.mail.Message;
 import jakarta.mail.MessagingException;
 import jakarta.mail.PasswordAuthentication;
+import jakarta.mail.SendFailedException;
 import jakarta.mail.Session;
 import jakarta.mail.Transport;
 import jakarta.mail.internet.InternetAddress;
@@ -18,23 +22,44 @@ import jakarta.mail.internet.MimeMessage;
 import static ch.qos.logback.core.util.OptionHelper.getEnv;
 import static io.github.davidvsaraiva.merlin.monitor.Config.getEnvOrDefault;
 
+/**
+ * Sends notifications over a single authenticated SMTP connection per {@link #send} call, either as one message
+ * with every recipient in BCC or as one message per recipient ({@code SMTP_DELIVERY}).
+ */
 public class EmailNotifier {
 
     private static final Logger LOG = LoggerFactory.getLogger(EmailNotifier.class);
 
     private static final String DELIMITER = ",";
 
+    public enum Delivery {
+        /** one message per recipient, each addressed to them */
+        INDIVIDUAL,
+        /** a single message to the sender with all recipients in BCC */
+        BCC
+    }
+
     private final Session session;
     private final String from;
     private final List<String> destinations;
+    private final Delivery delivery;
 
     public EmailNotifier(String host, int port, boolean starttls, String username, String password, String from,
             List<String> destinations) {
+        this(host, port, starttls, username, password, from, destinations, Delivery.INDIVIDUAL,
+                Duration.ofSeconds(10), Duration.ofSeconds(30));
+    }
+
+    public EmailNotifier(String host, int port, boolean starttls, String username, String password, String from,
+            List<String> destinations, Delivery delivery, Duration connectTimeout, Duration readTimeout) {
         Properties props = new Properties();
         props.put("mail.smtp.auth", "true");
         props.put("mail.smtp.starttls.enable", Boolean.toString(starttls));
         props.put("mail.smtp.host", host);
         props.put("mail.smtp.port", Integer.toString(port));
+        props.put("mail.smtp.connectiontimeout", Long.toString(connectTimeout.toMillis()));
+        props.put("mail.smtp.timeout", Long.toString(readTimeout.toMillis()));
+        props.put("mail.smtp.writetimeout", Long.toString(readTimeout.toMillis()));
 
         this.session = Session.getInstance(props, new Authenticator() {
             @Override
@@ -44,28 +69,86 @@ public class EmailNotifier {
         });
         this.from = from;
         this.destinations = destinations;
+        this.delivery = delivery;
     }
 
     public static EmailNotifier fromEnv() {
+        return fromEnv(null);
+    }
+
+    /**
+     * @param recipients overrides {@code SMTP_TO} when not empty
+     */
+    public static EmailNotifier fromEnv(List<String> recipients) {
         String host = System.getenv("SMTP_HOST");
         int port = Integer.parseInt(getEnvOrDefault("SMTP_PORT", "587"));
         boolean starttls = Boolean.parseBoolean(getEnvOrDefault("SMTP_STARTTLS", "true"));
         String user = getEnv("SMTP_USERNAME");
         String password = getEnv("SMTP_PASSWORD");
         String from = getEnv("SMTP_FROM");
-        List<String> to = List.of(getEnv("SMTP_TO").split(DELIMITER));
-        return new EmailNotifier(host, port, starttls, user, password, from, to);
+        List<String> to = recipients != null && !recipients.isEmpty()
+                ? recipients
+                : List.of(getEnv("SMTP_TO").split(DELIMITER));
+        Delivery delivery = Delivery.valueOf(getEnvOrDefault("SMTP_DELIVERY", "individual").trim().toUpperCase(Locale.ROOT));
+        Duration connectTimeout = Duration.ofMillis(Long.parseLong(getEnvOrDefault("SMTP_CONNECT_TIMEOUT_MS", "10000")));
+        Duration readTimeout = Duration.ofMillis(Long.parseLong(getEnvOrDefault("SMTP_READ_TIMEOUT_MS", "30000")));
+        return new EmailNotifier(host, port, starttls, user, password, from, to, delivery, connectTimeout, readTimeout);
     }
 
+    /**
+     * Sends to every destination over one connection. In individual mode a rejected recipient doesn't stop the
+     * others. A permanent rejection (5xx, e.g. an unknown mailbox) is logged and counts as done, since a retry would
+     * only send the mail to everyone else again; a temporary one is reported once all recipients were tried.
+     */
     public void send(String subject, String body) throws MessagingException {
-        for(String to: destinations) {
-            Message message = new MimeMessage(session);
-            message.setFrom(new InternetAddress(from));
-            message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to));
-            message.setSubject(subject);
-            message.setText(body);
-            Transport.send(message);
-            LOG.info("Sent email to " + to);
+        try (var phase = RunMetrics.global().phase("email_send");
+             Transport transport = session.getTransport("smtp")) {
+            transport.connect();
+            if (delivery == Delivery.BCC) {
+                Message message = newMessage(subject, body);
+                message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(from));
+                message.setRecipients(Message.RecipientType.BCC, InternetAddress.parse(String.join(DELIMITER, destinations)));
+                message.saveChanges();
+                transport.sendMessage(message, message.getRecipients(Message.RecipientType.BCC));
+                LOG.info("Sent email to {} recipients in BCC", destinations.size());
+                return;
+            }
+            List<String> failed = new ArrayList<>();
+            for(String to: destinations) {
+                Message message = newMessage(subject, body);
+                message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to));
+                message.saveChanges();
+                try {
+                    transport.sendMessage(message, message.getAllRecipients());
+                    LOG.info("Sent email to " + to);
+                } catch (SendFailedException e) {
+                    if (isPermanent(e)) {
+                        LOG.error("Email to {} permanently rejected, not retrying: {}", to, e.getMessage());
+                    } else {
+                        LOG.warn("Email to {} rejected: {}", to, e.getMessage());
+                        failed.add(to);
+                    }
+                }
+            }
+            if (!failed.isEmpty()) {
+                throw new MessagingException("Email rejected for " + failed);
+            }
         }
     }
+
+    /**
+     * JavaMail reports 5xx recipient replies as invalid addresses and 4xx ones as valid but unsent.
+     */
+    static boolean isPermanent(SendFailedException e) {
+        return e.getInvalidAddresses() != null && e.getInvalidAddresses().length > 0
+                && (e.getValidUnsentAddresses() == null || e.getValidUnsentAddresses().length == 0);
+    }
+
+    Message newMessage(String subject, String body) throws MessagingException {
+        Message message = new MimeMessage(session);
+        message.setFrom(new InternetAddress(from));
+        message.setSubject(subject);
+        message.setText(body);
+        return message;
+    }
 }
\ No newline at end of file
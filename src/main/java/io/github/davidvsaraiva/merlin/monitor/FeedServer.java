@@ -0,0 +1,294 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static io.github.davidvsaraiva.merlin.monitor.Config.getEnvOrDefault;
+
+/**
+ * Serves the workshop state over HTTP from memory, so clients don't have to copy and diff {@code workshops.json}.
+ * <p>
+ * {@code GET /workshops.json} returns the whole state with a strong ETag ({@code If-None-Match} gives a 304) and
+ * gzip when the client accepts it. {@code ?since=<instant>} returns the same document with only the workshops
+ * first seen after that instant. The state is published after every save; requests never touch the live,
+ * mutable state.
+ */
+public class FeedServer implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FeedServer.class);
+
+    static final String PATH = "/workshops.json";
+
+    // in a holder so that loading Main doesn't build a mapper when no feed is configured
+    private static final class Json {
+        static final ObjectMapper MAPPER = new ObjectMapper();
+    }
+
+    static {
+        // without TCP_NODELAY every small response waits ~40 ms for a delayed ACK; read once by the JDK server
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final InetSocketAddress address;
+    private final int threads;
+    private volatile Feed feed = Feed.of(new WorkshopState(Map.of(), null));
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public FeedServer(InetSocketAddress address, int threads) {
+        this.address = address;
+        this.threads = threads;
+    }
+
+    /**
+     * A server configured from {@code FEED_PORT}, {@code FEED_BIND} and {@code FEED_THREADS}; empty when no port
+     * is set.
+     */
+    public static Optional<FeedServer> fromEnv() {
+        String port = getEnvOrDefault("FEED_PORT", null);
+        if (port == null || port.isBlank()) {
+            return Optional.empty();
+        }
+        String bind = getEnvOrDefault("FEED_BIND", "127.0.0.1");
+        int threads = Integer.parseInt(getEnvOrDefault("FEED_THREADS", "4"));
+        return Optional.of(new FeedServer(new InetSocketAddress(bind, Integer.parseInt(port.trim())), threads));
+    }
+
+    public synchronized void start() throws IOException {
+        server = HttpServer.create(address, 0);
+        // Java 17 has no virtual threads; a small fixed pool is plenty for an in-memory feed
+        AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "feed-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext(PATH, this::handle);
+        server.start();
+        LOG.info("Serving workshop feed on http://{}:{}{}", address.getHostString(), port(), PATH);
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Replaces the served state. Call it from the thread that owns {@code state}: it is serialized right away.
+     */
+    public void publish(WorkshopState state) {
+        try {
+            feed = Feed.of(state);
+        } catch (RuntimeException e) {
+            LOG.error("Failed to publish workshop feed", e);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            if (!PATH.equals(exchange.getRequestURI().getPath())) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            Feed current = feed;
+            Representation body;
+            String since = queryParam(exchange.getRequestURI().getRawQuery(), "since");
+            if (since == null) {
+                body = current.full();
+            } else {
+                try {
+                    body = Representation.of(current.since(Instant.parse(since)));
+                } catch (DateTimeParseException e) {
+                    sendBytes(exchange, 400, "Invalid since, expected an ISO-8601 instant\n".getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+            }
+            boolean gzip = acceptsGzip(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            String etag = gzip ? body.gzipEtag() : body.etag();
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+            if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+                // the JDK server drops the connection after a 304; tell the client instead of letting it reuse it
+                exchange.getResponseHeaders().set("Connection", "close");
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            if (gzip) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            byte[] bytes = gzip ? body.gzipped() : body.bytes();
+            if ("HEAD".equals(method)) {
+                exchange.getResponseHeaders().set("Content-Length", Integer.toString(bytes.length));
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            sendBytes(exchange, 200, bytes);
+        } catch (RuntimeException e) {
+            LOG.warn("Feed request failed", e);
+        }
+    }
+
+    private static void sendBytes(HttpExchange exchange, int status, byte[] bytes) throws IOException {
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    static String queryParam(String rawQuery, String name) {
+        if (rawQuery == null) {
+            return null;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            if (name.equals(key)) {
+                return eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return Arrays.stream(parts).skip(1).map(String::trim).noneMatch(p -> p.matches("q=0(\\.0*)?"));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@code If-None-Match} uses the weak comparison, so {@code W/"x"} matches {@code "x"}.
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag) || (tag.startsWith("W/") && tag.substring(2).equals(etag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(1);
+            executor.shutdown();
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            server = null;
+        }
+    }
+
+    /**
+     * Immutable copy of a published state: the full document, ready to send, plus the workshops per store and a
+     * {@link FirstSeenIndex} over them for {@code since} queries.
+     */
+    private record Feed(Representation full, String lastUpdated, Map<String, WorkshopsRepository.StoreData> headers,
+                        Map<String, Map<String, WorkshopEntry>> workshops, FirstSeenIndex index) {
+
+        static Feed of(WorkshopState state) {
+            // lastChecked and version of every store, for deltas
+            Map<String, WorkshopsRepository.StoreData> headers = new LinkedHashMap<>();
+            Map<String, Map<String, WorkshopEntry>> workshops = new HashMap<>();
+            state.stores().forEach((store, data) -> {
+                headers.put(store, data.withoutWorkshops());
+                workshops.put(store, Map.copyOf(data.getWorkshops()));
+            });
+            byte[] full;
+            try {
+                full = Json.MAPPER.writeValueAsBytes(state);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot serialize workshop state", e);
+            }
+            return new Feed(Representation.of(full), state.lastUpdated(), headers, workshops, FirstSeenIndex.of(state));
+        }
+
+        /**
+         * The state with only the workshops first seen strictly after {@code since}; every store is listed.
+         */
+        byte[] since(Instant since) {
+            Map<String, WorkshopsRepository.StoreData> stores = new LinkedHashMap<>();
+            headers.forEach((store, header) -> stores.put(store, header.withoutWorkshops()));
+            for (FirstSeenIndex.Hit hit : index.after(null, since)) {
+                stores.get(hit.store()).getWorkshops().put(hit.title(), workshops.get(hit.store()).get(hit.title()));
+            }
+            try {
+                return Json.MAPPER.writeValueAsBytes(new WorkshopState(stores, lastUpdated));
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot serialize workshop delta", e);
+            }
+        }
+    }
+
+    private record Representation(byte[] bytes, byte[] gzipped, String etag, String gzipEtag) {
+
+        static Representation of(byte[] bytes) {
+            String hash;
+            try {
+                hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes), 0, 16);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            // a strong ETag identifies the exact bytes, so the gzip representation gets its own
+            return new Representation(bytes, gzip(bytes), "\"" + hash + "\"", "\"" + hash + "-gzip\"");
+        }
+
+        private static byte[] gzip(byte[] bytes) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+            try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+                gz.write(bytes);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return out.toByteArray();
+        }
+    }
+}
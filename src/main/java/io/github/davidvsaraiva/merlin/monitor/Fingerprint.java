@@ -0,0 +1,50 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Short content hashes (the first 128 bits of SHA-256, in hex) to tell whether something changed since it was
+ * last seen.
+ */
+final class Fingerprint {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private Fingerprint() {
+    }
+
+    /**
+     * Identifies a scraped list regardless of title order and of extra whitespace within titles.
+     */
+    static String ofTitles(List<String> titles) {
+        MessageDigest digest = sha256();
+        titles.stream()
+                .map(t -> WHITESPACE.matcher(t.trim()).replaceAll(" "))
+                .sorted()
+                .forEach(t -> digest.update((t + "\n").getBytes(StandardCharsets.UTF_8)));
+        return hex(digest);
+    }
+
+    static String of(String content) {
+        MessageDigest digest = sha256();
+        digest.update(content.getBytes(StandardCharsets.UTF_8));
+        return hex(digest);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest(), 0, 16);
+    }
+}
@@ -0,0 +1,222 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Workshops ordered by when they were first seen, overall and per store, for questions like "what appeared in
+ * the last 7 days". Times are kept as epoch nanoseconds in sorted arrays, so a range or top-N query is a binary
+ * search plus a copy of the {@code k} hits, and run timestamps keep their sub-millisecond part. New workshops
+ * are seen "now" and land at the end of the arrays.
+ * <p>
+ * Entries whose {@code firstSeen} isn't an ISO instant are left out.
+ */
+public class FirstSeenIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FirstSeenIndex.class);
+
+    private final Column all = new Column();
+    private final Map<String, Column> byStore = new HashMap<>();
+
+    public static FirstSeenIndex of(WorkshopState state) {
+        List<Hit> hits = new ArrayList<>();
+        state.stores().forEach((store, data) -> data.getWorkshops().values().forEach(e -> {
+            long nanos = nanos(e.firstSeen());
+            if (nanos != Long.MIN_VALUE) {
+                hits.add(new Hit(store, e.title(), nanos));
+            }
+        }));
+        hits.sort(Comparator.comparingLong(Hit::firstSeenNanos));
+        FirstSeenIndex index = new FirstSeenIndex();
+        for (Hit hit : hits) {
+            index.insert(hit);
+        }
+        return index;
+    }
+
+    public synchronized void add(String store, String title, String firstSeen) {
+        long nanos = nanos(firstSeen);
+        if (nanos == Long.MIN_VALUE) {
+            LOG.debug("Not indexing {} / {}: firstSeen {} is not an instant", store, title, firstSeen);
+            return;
+        }
+        insert(new Hit(store, title, nanos));
+    }
+
+    /**
+     * Forgets a workshop, e.g. once it is archived.
+     */
+    public synchronized void remove(String store, String title, String firstSeen) {
+        long nanos = nanos(firstSeen);
+        if (nanos != Long.MIN_VALUE) {
+            Hit hit = new Hit(store, title, nanos);
+            all.remove(hit);
+            column(store).remove(hit);
+        }
+    }
+
+    private void insert(Hit hit) {
+        all.insert(hit);
+        byStore.computeIfAbsent(hit.store(), s -> new Column()).insert(hit);
+    }
+
+    /**
+     * Workshops first seen in {@code [from, to)}, oldest first.
+     *
+     * @param store a store, or {@code null} for all of them
+     */
+    public synchronized List<Hit> range(String store, Instant from, Instant to) {
+        Column column = column(store);
+        int lo = column.lowerBound(nanos(from));
+        int hi = column.lowerBound(nanos(to));
+        return lo < hi ? List.of(Arrays.copyOfRange(column.hits, lo, hi)) : List.of();
+    }
+
+    /**
+     * Workshops first seen strictly after {@code since}, oldest first.
+     *
+     * @param store a store, or {@code null} for all of them
+     */
+    public synchronized List<Hit> after(String store, Instant since) {
+        Column column = column(store);
+        int lo = column.upperBound(nanos(since));
+        return lo < column.size ? List.of(Arrays.copyOfRange(column.hits, lo, column.size)) : List.of();
+    }
+
+    /**
+     * The {@code n} most recently first seen workshops, newest first.
+     *
+     * @param store a store, or {@code null} for all of them
+     */
+    public synchronized List<Hit> newest(String store, int n) {
+        Column column = column(store);
+        int count = Math.min(n, column.size);
+        Hit[] newest = new Hit[count];
+        for (int i = 0; i < count; i++) {
+            newest[i] = column.hits[column.size - 1 - i];
+        }
+        return List.of(newest);
+    }
+
+    public synchronized int size() {
+        return all.size;
+    }
+
+    private Column column(String store) {
+        if (store == null) {
+            return all;
+        }
+        Column column = byStore.get(store);
+        return column == null ? new Column() : column;
+    }
+
+    private static long nanos(String iso) {
+        if (iso == null) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            return nanos(Instant.parse(iso));
+        } catch (RuntimeException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Epoch nanoseconds, saturated outside the years 1677 to 2262; {@code Long.MIN_VALUE} stays free to mark an
+     * entry that isn't an instant.
+     */
+    private static long nanos(Instant t) {
+        try {
+            long nanos = Math.addExact(Math.multiplyExact(t.getEpochSecond(), 1_000_000_000L), t.getNano());
+            return Math.max(Long.MIN_VALUE + 1, nanos);
+        } catch (ArithmeticException e) {
+            return t.getEpochSecond() < 0 ? Long.MIN_VALUE + 1 : Long.MAX_VALUE;
+        }
+    }
+
+    public record Hit(String store, String title, long firstSeenNanos) {
+
+        public Instant firstSeen() {
+            return Instant.ofEpochSecond(0, firstSeenNanos);
+        }
+    }
+
+    /**
+     * Hits sorted by time in two parallel arrays; equal times keep insertion order.
+     */
+    private static final class Column {
+        private long[] nanos = new long[16];
+        private Hit[] hits = new Hit[16];
+        private int size;
+
+        void insert(Hit hit) {
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+                hits = Arrays.copyOf(hits, size * 2);
+            }
+            long t = hit.firstSeenNanos();
+            int pos = size;
+            if (size > 0 && nanos[size - 1] > t) {
+                pos = upperBound(t);
+                System.arraycopy(nanos, pos, nanos, pos + 1, size - pos);
+                System.arraycopy(hits, pos, hits, pos + 1, size - pos);
+            }
+            nanos[pos] = t;
+            hits[pos] = hit;
+            size++;
+        }
+
+        void remove(Hit hit) {
+            for (int i = lowerBound(hit.firstSeenNanos()); i < size && nanos[i] == hit.firstSeenNanos(); i++) {
+                if (hits[i].equals(hit)) {
+                    System.arraycopy(nanos, i + 1, nanos, i, size - i - 1);
+                    System.arraycopy(hits, i + 1, hits, i, size - i - 1);
+                    hits[--size] = null;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * First position whose time is {@code >= t}.
+         */
+        int lowerBound(long t) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (nanos[mid] < t) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * First position whose time is {@code > t}.
+         */
+        int upperBound(long t) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (nanos[mid] <= t) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+}
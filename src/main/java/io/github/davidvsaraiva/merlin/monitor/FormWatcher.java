@@ -6,11 +6,16 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
 import java.util.stream.Collectors;
 
-import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.NoSuchElementException;
 import org.openqa.selenium.TimeoutException;
 import org.openqa.selenium.WebDriver;
@@ -18,15 +23,12 @@ import org.openqa.selenium.WebElement;
 import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.chrome.ChromeDriverService;
 import org.openqa.selenium.chrome.ChromeOptions;
-import org.openqa.selenium.support.ui.ExpectedConditions;
-import org.openqa.selenium.support.ui.Select;
-import org.openqa.selenium.support.ui.WebDriverWait;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static io.github.davidvsaraiva.merlin.monitor.Config.getEnvOrDefault;
 
-public class FormWatcher {
+public class FormWatcher implements WorkshopSource, AutoCloseable {
 
     private static final Logger LOG = LoggerFactory.getLogger(FormWatcher.class);
 
@@ -34,69 +36,214 @@ public class FormWatcher {
     private static final String CHROMIUM_BROWSER_PATH = getEnvOrDefault("CHROMIUM_BROWSER_PATH", null);
     private static final String CHROMIUM_DRIVER_PATH = getEnvOrDefault("CHROMIUM_DRIVER_PATH", null);
     private static final Duration TIMEOUT = Duration.ofSeconds(20);
+    private static final Duration MIN_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration MAX_TIMEOUT = Duration.ofSeconds(60);
+    private static final int TIMEOUT_WINDOW = 20;
+    // how long the form must leave the list alone after a selection before an empty list, or one equal to the
+    // previous store's, is taken as the store's own
+    private static final Duration LIST_SETTLE = Duration.ofSeconds(2);
+    // async scripts below time out in the page first; this only guards against a stuck script
+    private static final Duration SCRIPT_TIMEOUT = MAX_TIMEOUT.plus(MIN_TIMEOUT);
+    private static final RunMetrics METRICS = RunMetrics.global();
 
     private final String formUrl;
+    private final WebDriverPool driverPool;
+    private final boolean ownsPool;
+    private final Path timeoutsFile;
+
+    // learnt from recent scrapes: page load until the dropdown exists, and selection until the list renders
+    private final AdaptiveTimeout pageTimeout = new AdaptiveTimeout(TIMEOUT, MIN_TIMEOUT, MAX_TIMEOUT, TIMEOUT_WINDOW);
+    private final AdaptiveTimeout listTimeout = new AdaptiveTimeout(TIMEOUT, MIN_TIMEOUT, MAX_TIMEOUT, TIMEOUT_WINDOW);
 
     public FormWatcher(String formUrl) {
+        this(formUrl, WebDriverPool.fromEnv(FormWatcher::createWebDriver), true, null);
+    }
+
+    public FormWatcher(String formUrl, WebDriverPool driverPool) {
+        this(formUrl, driverPool, false, null);
+    }
+
+    /**
+     * @param timeoutsFile where the samples behind the learnt timeouts are kept between processes
+     */
+    public FormWatcher(String formUrl, WebDriverPool driverPool, Path timeoutsFile) {
+        this(formUrl, driverPool, false, timeoutsFile);
+    }
+
+    private FormWatcher(String formUrl, WebDriverPool driverPool, boolean ownsPool, Path timeoutsFile) {
         this.formUrl = formUrl;
+        this.driverPool = driverPool;
+        this.ownsPool = ownsPool;
+        this.timeoutsFile = timeoutsFile;
+        if (timeoutsFile != null) {
+            AdaptiveTimeout.load(timeoutsFile, timeouts());
+        }
     }
 
+    @Override
     public List<String> fetchWorkshopsForStore(String storeName) {
-        WebDriver driver = createWebDriver();
-        WebDriverWait wait = new WebDriverWait(driver, TIMEOUT);
+        return fetchWorkshopsForStores(List.of(storeName)).get(storeName);
+    }
+
+    /**
+     * Loads the form once and reads the workshops of every store by switching the store dropdown in place,
+     * so the number of page loads does not grow with the number of stores.
+     * <p>
+     * A store that can't be read (missing from the dropdown, list not rendered in time) is logged and left out;
+     * only when no store could be read does this throw.
+     */
+    @Override
+    public Map<String, List<String>> fetchWorkshopsForStores(Collection<String> storeNames) {
+        WebDriverPool.Lease lease;
+        try {
+            lease = driverPool.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a browser session", e);
+        }
+        WebDriver driver = lease.driver();
+        String current = null;
+        // the timeouts bound single commands; this bounds the whole scrape, however the browser gets stuck
+        BrowserSupervisor.Deadline deadline = BrowserSupervisor.deadline(driver, BrowserSupervisor.SCRAPE_DEADLINE);
         try {
-            driver.get(formUrl);
-
-            WebElement dropdown = locateDropdown(wait);
-            selectStore(storeName, dropdown);
-            List<WebElement> labelNodes = collectAllWorkshops(wait, driver);
-            if (labelNodes.isEmpty()) {
-                LOG.debug("Not able to to read workshops list, attempting to read workshops from XPath...");
-                labelNodes = findElementsByXpath(driver);
+            driver.manage().timeouts().scriptTimeout(SCRIPT_TIMEOUT);
+            long start = System.nanoTime();
+            StartupReport.firstPageLoad();
+            try (var phase = METRICS.phase("page_load")) {
+                driver.get(formUrl);
+            }
+
+            WebElement dropdown = locateDropdown(driver, start);
+            Map<String, List<String>> workshopsPerStore = new LinkedHashMap<>();
+            RuntimeException failure = null;
+            List<String> previous = List.of();
+            for (String storeName : storeNames) {
+                RunCancellation.checkpoint();
+                current = storeName;
+                try {
+                    selectStore(storeName, dropdown, driver);
+                    List<String> workshops = collectAllWorkshops(driver, storeName, previous);
+                    LOG.debug("Found {} workshops for store {}", workshops.size(), storeName);
+                    workshopsPerStore.put(storeName, workshops);
+                    previous = workshops;
+                } catch (NoSuchElementException | TimeoutException e) {
+                    if (deadline.expired()) {
+                        throw e;
+                    }
+                    // the page itself is fine, carry on with the other stores
+                    LOG.error("Failed to fetch workshops for store {}", storeName, e);
+                    failure = e;
+                }
+            }
+            if (workshopsPerStore.isEmpty() && failure != null) {
+                throw failure;
             }
-            LOG.debug("Found {} workshops for store {}", labelNodes.size(), storeName);
-            return labelNodes.stream()
-                    .map(WebElement::getText)
-                    .map(String::trim)
-                    .filter(s -> !s.isBlank())
-                    .collect(Collectors.toCollection(ArrayList::new));
+            reportPageStats(driver);
+            return workshopsPerStore;
         } catch (TimeoutException te) {
             throw new RuntimeException("Timed out locating store dropdown or workshops list", te);
+        } catch (CancellationException e) {
+            // stopped between two stores, the browser is fine
+            throw e;
         } catch (Exception e) {
-            throw new RuntimeException("Failed to fetch workshops for store: " + storeName, e);
+            // the browser may be in an unknown state, don't hand it to the next run
+            lease.invalidate();
+            if (deadline.expired()) {
+                throw new RuntimeException("Browser killed after the scrape deadline of "
+                        + BrowserSupervisor.SCRAPE_DEADLINE + ", reading store: " + current, e);
+            }
+            throw new RuntimeException("Failed to fetch workshops for store: " + current, e);
         } finally {
-            driver.quit();
+            deadline.close();
+            if (deadline.expired()) {
+                lease.invalidate();
+            }
+            lease.close();
+            saveTimeouts();
+        }
+    }
+
+    private Map<String, AdaptiveTimeout> timeouts() {
+        return Map.of("page", pageTimeout, "list", listTimeout);
+    }
+
+    // parallel scrapes share this watcher and the temp file of the atomic write
+    private synchronized void saveTimeouts() {
+        if (timeoutsFile != null) {
+            AdaptiveTimeout.save(timeoutsFile, timeouts());
         }
     }
 
-    private static WebDriver createWebDriver() {
+    /**
+     * Closes the driver pool when this watcher created it; shared pools are closed by their owner.
+     */
+    @Override
+    public void close() {
+        if (ownsPool) {
+            driverPool.close();
+        }
+    }
+
+    static WebDriver createWebDriver() {
         WebDriver driver;
+        ChromeOptions opts = chromeOptions();
+        // runs once the browser is gone, or when it could not be started
+        List<Runnable> cleanup = new ArrayList<>();
+        // lean mode reuses a persistent (locked) profile so the HTTP cache survives between sessions
+        Optional<LeanBrowser.ProfileLock> profileLock = LeanBrowser.ENABLED ? LeanBrowser.lockProfile() : Optional.empty();
+        if (profileLock.isPresent()) {
+            opts.addArguments("--user-data-dir=" + profileLock.get().dir().toAbsolutePath());
+            cleanup.add(profileLock.get()::release);
+        } else {
+            // our own temporary profile, so that one left behind by a crash can be recognised and deleted
+            Path profile = mkTempProfile();
+            opts.addArguments("--user-data-dir=" + profile.toAbsolutePath());
+            cleanup.add(() -> rmDir(profile));
+        }
+        try {
+            ChromeDriverService service;
+            if (IS_CHROMIUM) {
+                if(CHROMIUM_BROWSER_PATH != null && CHROMIUM_DRIVER_PATH != null) {
+                    opts.setBinary(CHROMIUM_BROWSER_PATH);
+                    opts.addArguments("--disable-dev-shm-usage", "--remote-debugging-port=0", "--no-default-browser-check");
+                    service = new ChromeDriverService.Builder()
+                            .usingDriverExecutable(new File(CHROMIUM_DRIVER_PATH))
+                            .withLogFile(new File("/tmp/chromedriver.log"))
+                            .build();
+                } else {
+                    throw new IllegalArgumentException("CHROMIUM_PATH is not set and trying to use chromium");
+                }
+            }  else {
+                service = ChromeDriverService.createDefaultService();
+            }
+            driver = new BrowserSupervisor.SupervisedChromeDriver(service, opts,
+                    BrowserSupervisor.clientConfig(SCRIPT_TIMEOUT), cleanup);
+        } catch (RuntimeException e) {
+            cleanup.forEach(Runnable::run);
+            throw e;
+        }
+        if (LeanBrowser.ENABLED) {
+            LeanBrowser.blockResources(driver);
+        }
+        return driver;
+    }
+
+    /**
+     * The browser flags from the environment, without a profile directory or binary.
+     */
+    static ChromeOptions chromeOptions() {
         ChromeOptions opts = new ChromeOptions();
         opts.addArguments("--no-sandbox", "--disable-gpu");
         if (Boolean.parseBoolean(getEnvOrDefault("HEADLESS_MODE", "true"))) {
             opts.addArguments("--headless=new");
         }
-        if (IS_CHROMIUM) {
-            if(CHROMIUM_BROWSER_PATH != null && CHROMIUM_DRIVER_PATH != null) {
-                opts.setBinary(CHROMIUM_BROWSER_PATH);
-                Path profile = mkTempProfile();
-                opts.addArguments("--user-data-dir=" + profile.toAbsolutePath(), "--disable-dev-shm-usage", "--remote-debugging-port=0", "--no-default-browser-check");
-                Runtime.getRuntime().addShutdownHook(new Thread(() -> rmDir(profile)));
-                ChromeDriverService service = new ChromeDriverService.Builder()
-                        .usingDriverExecutable(new File(CHROMIUM_DRIVER_PATH))
-                        .withLogFile(new File("/tmp/chromedriver.log"))
-                        .build();
-                driver = new ChromeDriver(service, opts);
-            } else {
-                throw new IllegalArgumentException("CHROMIUM_PATH is not set and trying to use chromium");
-            }
-        }  else {
-            driver = new ChromeDriver(opts);
+        if (LeanBrowser.ENABLED) {
+            LeanBrowser.applyFlags(opts);
         }
-        return driver;
+        BrowserSupervisor.applyTimeouts(opts);
+        return opts;
     }
 
-
     private static Path mkTempProfile() {
         try {
             return Files.createTempDirectory("selenium-chrome-profile-");
@@ -112,64 +259,113 @@ public class FormWatcher {
         } catch (Exception ignored) {}
     }
 
-    private static List<WebElement> findElementsByXpath(WebDriver driver) {
-        List<WebElement> labelNodes;
-        By WORKSHOP_LABELS = By.xpath(
-                "//ul[contains(@class,'ChoiceStructure')]" +
-                "[not(ancestor-or-self::*[@aria-hidden='true' or contains(@style,'display: none') or contains(@style,'visibility: hidden')])]" +
-                "//li[contains(@class,'Selection')]//span[contains(@class,'LabelWrapper')]/label");
-        labelNodes = driver.findElements(WORKSHOP_LABELS);
-        return labelNodes;
+    private List<String> collectAllWorkshops(WebDriver driver, String storeName, List<String> previous) {
+        Duration timeout = listTimeout.current();
+        LOG.debug("Waiting up to {} for workshops list...", timeout);
+        // Wait for the workshops list (checkboxes) to render after selection. When the form was already
+        // showing another store, also wait for the list to be replaced so we don't read the old one, unless
+        // the page settles on it. The page notifies us through a MutationObserver as soon as that happens.
+        long start = System.nanoTime();
+        Map<String, Object> result;
+        try (var phase = METRICS.phase("list_wait", storeName)) {
+            result = asyncScript(driver, PageScripts.WAIT_FOR_WORKSHOPS, storeName, previous, LIST_SETTLE.toMillis(),
+                    timeout.toMillis());
+        }
+        // the labels are read inside the wait above; the page reports how long the read that counted took
+        if (result.get("extractionMillis") instanceof Number millis) {
+            METRICS.record("extraction", Duration.ofNanos(Math.round(millis.doubleValue() * 1_000_000)));
+        }
+        List<String> titles = toTitles(result.get("titles"));
+        // A list in the store's own question block is accepted at once, even when it equals the previous store's.
+        // An empty list, or one equal to the previous store's, only once the page stopped changing it.
+        if (Boolean.TRUE.equals(result.get("timedOut"))) {
+            throw new TimeoutException("Workshops list of " + storeName + " still changing after " + timeout);
+        }
+        if (Boolean.TRUE.equals(result.get("settled"))) {
+            // how long it took says nothing about rendering, don't learn the timeout from it
+            LOG.debug("Workshops list of {} unchanged for {}, taking its {} workshops as final", storeName,
+                    LIST_SETTLE, titles.size());
+        } else {
+            listTimeout.record(Duration.ofNanos(System.nanoTime() - start));
+        }
+        LOG.info("Read workshops list");
+        return titles;
+    }
+
+    /**
+     * Reads the visible workshop labels in one round trip, preferring the question block dedicated to the
+     * store ("Em que workshop quer participar na loja de ...?") when the form keeps several of them in the page.
+     */
+    @SuppressWarnings("unchecked")
+    static VisibleWorkshops readWorkshops(WebDriver driver, String storeName) {
+        Map<String, Object> result = (Map<String, Object>) ((JavascriptExecutor) driver)
+                .executeScript(PageScripts.READ_WORKSHOPS, storeName);
+        return new VisibleWorkshops(toTitles(result.get("titles")), Boolean.TRUE.equals(result.get("scoped")));
     }
 
-    private static List<WebElement> collectAllWorkshops(WebDriverWait wait, WebDriver driver) {
-        LOG.debug("Waiting for workshops list...");
-        // Wait for the workshops list (checkboxes) to render after selection
-        By WORKSHOP_LABELS_CSS = By.cssSelector("ul.ChoiceStructure li.Selection span.LabelWrapper > label");
+    @SuppressWarnings("unchecked")
+    private static List<String> toTitles(Object titles) {
+        return ((List<Object>) titles).stream()
+                .map(String::valueOf)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
 
-        // Wait until at least one matching label is actually displayed
-        wait.until(d -> d.findElements(WORKSHOP_LABELS_CSS)
-                .stream().anyMatch(WebElement::isDisplayed));
+    /**
+     * Logs how long the page took to load and how many bytes it pulled over the network.
+     */
+    @SuppressWarnings("unchecked")
+    private void reportPageStats(WebDriver driver) {
+        try {
+            Map<String, Object> stats = (Map<String, Object>) ((JavascriptExecutor) driver)
+                    .executeScript(PageScripts.PAGE_STATS);
+            LOG.info("Page loaded in {} ms (DOM ready {} ms), transferred {} KB in {} requests",
+                    stats.get("loadMillis"), stats.get("domReadyMillis"),
+                    ((Number) stats.get("transferBytes")).longValue() / 1024, stats.get("requests"));
+        } catch (RuntimeException e) {
+            LOG.debug("Could not read page stats", e);
+        }
+    }
 
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asyncScript(WebDriver driver, String script, Object... args) {
+        return (Map<String, Object>) ((JavascriptExecutor) driver).executeAsyncScript(script, args);
+    }
 
-        LOG.info("Read workshops list");
-        // Collect visible labels paired with those checkboxes.
-        // Now collect only the visible ones
-        return driver.findElements(WORKSHOP_LABELS_CSS)
-                .stream().filter(WebElement::isDisplayed).toList();
+    record VisibleWorkshops(List<String> titles, boolean scoped) {
     }
 
-    private static void selectStore(String storeName, WebElement dropdown) {
-        Select select = new Select(dropdown);
-        try {
-            LOG.info("Selecting store: {}", storeName);
-            select.selectByVisibleText(storeName);
-            LOG.debug("Store selected");
-        } catch (NoSuchElementException e) {
-            LOG.debug("Store not found: {}, using fallback without accents", storeName);
-            // Fallback: try without accents if needed (e.g., 'Loule')
-            String ascii = storeName.replace("é", "e").replace("É", "E");
-            select.selectByVisibleText(ascii);
-            LOG.debug("Store selected using fallback");
+    private static void selectStore(String storeName, WebElement dropdown, WebDriver driver) {
+        LOG.info("Selecting store: {}", storeName);
+        // set the value and fire the change event in the page; also matches 'Loule' against 'Loulé'
+        Object selected;
+        try (var phase = METRICS.phase("store_select", storeName)) {
+            selected = ((JavascriptExecutor) driver).executeScript(PageScripts.SELECT_STORE, dropdown, storeName);
         }
+        if (selected == null) {
+            throw new NoSuchElementException("Cannot locate option with text: " + storeName);
+        }
+        if (!storeName.trim().equals(selected)) {
+            METRICS.count("store_select_accent_fallbacks", storeName, 1);
+        }
+        LOG.debug("Store selected: {}", selected);
     }
 
-    private static WebElement locateDropdown(WebDriverWait wait) {
-        WebElement dropdown;
-        try {
-            LOG.info("Finding dropdown...");
-            dropdown = wait.until(ExpectedConditions.presenceOfElementLocated(By.id("QR~QID18")));
-            dropdown.click();
-            LOG.debug("Dropdown found by id");
-        } catch (TimeoutException e) {
-            LOG.debug("Dropdown not found by id, trying by text");
-            // Fallback: by label text if the id ever changes
-            dropdown = wait.until(ExpectedConditions.presenceOfElementLocated(
-                    By.xpath("//label[contains(normalize-space(.), 'Selecione a sua loja')]/following::select[1]")
-            ));
-            dropdown.click();
-            LOG.debug("Dropdown found by text");
-        }
-        return dropdown;
-    }
-}
\ No newline at end of file
+    private WebElement locateDropdown(WebDriver driver, long loadStart) {
+        Duration timeout = pageTimeout.current();
+        LOG.info("Finding dropdown...");
+        // Watch the id and, in case the id ever changes, the label text at the same time
+        Map<String, Object> found;
+        try (var phase = METRICS.phase("dropdown_locate")) {
+            found = asyncScript(driver, PageScripts.WAIT_FOR_DROPDOWN, timeout.toMillis());
+        }
+        if (found == null) {
+            throw new TimeoutException("Store dropdown not found after " + timeout);
+        }
+        pageTimeout.record(Duration.ofNanos(System.nanoTime() - loadStart));
+        LOG.debug("Dropdown found by {}", found.get("via"));
+        if ("label".equals(found.get("via"))) {
+            METRICS.count("dropdown_label_fallbacks", null, 1);
+        }
+        return (WebElement) found.get("element");
+    }
+}
@@ -0,0 +1,256 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the workshops straight from the form's HTTP response, without starting a browser.
+ * <p>
+ * The workshops of a store are taken from the question block titled with the store name, either from the
+ * rendered {@code ChoiceStructure} lists or from a survey definition embedded as JSON. Stores that cannot be
+ * read that way (for instance when the form is only rendered by JavaScript) are handed to the fallback
+ * source, normally the Selenium {@link FormWatcher}. When the fallback fails, the stores read over HTTP are still
+ * returned and the others are left out for that run.
+ * <p>
+ * When a response is byte-for-byte the one loaded last time, the stores already read from it are not parsed
+ * again.
+ */
+public class HttpFormFetcher implements WorkshopSource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HttpFormFetcher.class);
+
+    private static final String STORE_DROPDOWN = "select[id=QR~QID18]";
+    private static final String WORKSHOP_LABELS = "ul.ChoiceStructure li.Selection span.LabelWrapper > label";
+    private static final Duration TIMEOUT = Duration.ofSeconds(20);
+
+    private final String formUrl;
+    private final CompletableFuture<HttpClient> client;
+    private final WorkshopSource fallback;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private volatile Parsed lastPage = new Parsed("", Map.of());
+
+    /**
+     * What the stores parsed to the last time the response had this fingerprint.
+     */
+    private record Parsed(String fingerprint, Map<String, List<String>> stores) {
+    }
+
+    /**
+     * Builds the client in the background: setting up TLS takes a good part of a second on a small board, time
+     * a {@code --once} run spends loading its state meanwhile.
+     */
+    public HttpFormFetcher(String formUrl, WorkshopSource fallback) {
+        this(formUrl, CompletableFuture.supplyAsync(HttpFormFetcher::newClient), fallback);
+    }
+
+    public HttpFormFetcher(String formUrl, HttpClient client, WorkshopSource fallback) {
+        this(formUrl, CompletableFuture.completedFuture(client), fallback);
+    }
+
+    private HttpFormFetcher(String formUrl, CompletableFuture<HttpClient> client, WorkshopSource fallback) {
+        this.formUrl = formUrl;
+        this.client = client;
+        this.fallback = fallback;
+    }
+
+    /**
+     * One client per process: it keeps its connections alive and reuses them between runs.
+     */
+    static HttpClient newClient() {
+        return HttpClient.newBuilder()
+                .connectTimeout(TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    @Override
+    public List<String> fetchWorkshopsForStore(String storeName) {
+        return fetchWorkshopsForStores(List.of(storeName)).get(storeName);
+    }
+
+    @Override
+    public Map<String, List<String>> fetchWorkshopsForStores(Collection<String> storeNames) {
+        Map<String, List<String>> parsed = new LinkedHashMap<>();
+        List<String> unparsed = new ArrayList<>();
+        Optional<String> body;
+        StartupReport.firstPageLoad();
+        try (var phase = RunMetrics.global().phase("http_load")) {
+            body = load();
+        }
+        String fingerprint = body.map(Fingerprint::of).orElse("");
+        Parsed previous = lastPage;
+        Map<String, List<String>> known = previous.fingerprint().equals(fingerprint) ? previous.stores() : Map.of();
+        Document page = null;
+        for (String storeName : storeNames) {
+            Optional<List<String>> workshops = Optional.ofNullable(known.get(storeName));
+            if (workshops.isPresent()) {
+                LOG.debug("Page unchanged, reusing the workshops of store {}", storeName);
+            } else if (body.isPresent()) {
+                try (var phase = RunMetrics.global().phase("http_extraction", storeName)) {
+                    if (page == null) {
+                        page = Jsoup.parse(body.get(), formUrl);
+                    }
+                    workshops = parse(page, storeName);
+                }
+            }
+            if (workshops.isPresent()) {
+                LOG.debug("Found {} workshops for store {} over HTTP", workshops.get().size(), storeName);
+                parsed.put(storeName, workshops.get());
+            } else {
+                unparsed.add(storeName);
+            }
+        }
+        if (body.isPresent()) {
+            Map<String, List<String>> stores = new LinkedHashMap<>(known);
+            stores.putAll(parsed);
+            lastPage = new Parsed(fingerprint, Map.copyOf(stores));
+        }
+        if (unparsed.isEmpty()) {
+            return parsed;
+        }
+        LOG.info("Could not read stores {} over HTTP, falling back to the browser", unparsed);
+        Map<String, List<String>> fromFallback;
+        try {
+            fromFallback = fallback.fetchWorkshopsForStores(unparsed);
+        } catch (CancellationException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            if (parsed.isEmpty()) {
+                throw e;
+            }
+            // the stores read over HTTP are fine, only the ones left to the browser failed this run
+            LOG.error("Browser fallback failed for stores {}", unparsed, e);
+            return parsed;
+        }
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        for (String storeName : storeNames) {
+            List<String> workshops = parsed.containsKey(storeName) ? parsed.get(storeName) : fromFallback.get(storeName);
+            if (workshops != null) {
+                result.put(storeName, workshops);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the body of the form, or empty when it could not be loaded
+     */
+    private Optional<String> load() {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(formUrl))
+                .timeout(TIMEOUT)
+                .header("Accept", "text/html,application/xhtml+xml")
+                .GET()
+                .build();
+        try {
+            HttpResponse<String> response = client.join().send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                LOG.warn("Form returned HTTP {}", response.statusCode());
+                return Optional.empty();
+            }
+            return Optional.of(response.body());
+        } catch (IOException e) {
+            LOG.warn("Failed to load form over HTTP", e);
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while loading form", e);
+        }
+    }
+
+    /**
+     * @return the store's workshops, or empty when the page doesn't carry them; a block naming the store but
+     *         listing no workshops counts as not carrying them, so the browser gets to read it
+     */
+    Optional<List<String>> parse(Document page, String storeName) {
+        Optional<List<String>> fromHtml = parseHtml(page, storeName);
+        return fromHtml.isPresent() ? fromHtml : parseSurveyPayload(page, storeName);
+    }
+
+    private static Optional<List<String>> parseHtml(Document page, String storeName) {
+        Element dropdown = page.selectFirst(STORE_DROPDOWN);
+        if (dropdown == null || dropdown.select("option").stream().noneMatch(o -> sameStore(o.text(), storeName))) {
+            return Optional.empty();
+        }
+        for (Element question : page.select("div.QuestionOuter")) {
+            Element text = question.selectFirst(".QuestionText");
+            if (text != null && mentionsStore(text.text(), storeName)) {
+                List<String> titles = question.select(WORKSHOP_LABELS).stream()
+                        .map(Element::text)
+                        .map(String::trim)
+                        .filter(s -> !s.isBlank())
+                        .toList();
+                // no rendered labels: the list is filled in by JavaScript, which only the browser can run
+                if (!titles.isEmpty()) {
+                    return Optional.of(titles);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Looks for a survey definition embedded as JSON ({@code QuestionText} plus {@code Choices} with a
+     * {@code Display} per choice) and reads the choices of the question that names the store.
+     */
+    private Optional<List<String>> parseSurveyPayload(Document page, String storeName) {
+        for (Element script : page.select("script[type=application/json]")) {
+            JsonNode root;
+            try {
+                root = mapper.readTree(script.data());
+            } catch (IOException e) {
+                continue;
+            }
+            for (JsonNode question : root.findParents("QuestionText")) {
+                JsonNode choices = question.get("Choices");
+                if (choices == null || !mentionsStore(Jsoup.parse(question.get("QuestionText").asText()).text(), storeName)) {
+                    continue;
+                }
+                List<String> titles = new ArrayList<>();
+                for (Iterator<JsonNode> it = choices.elements(); it.hasNext(); ) {
+                    String display = Jsoup.parse(it.next().path("Display").asText()).text().trim();
+                    if (!display.isBlank()) {
+                        titles.add(display);
+                    }
+                }
+                if (!titles.isEmpty()) {
+                    return Optional.of(titles);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static boolean sameStore(String text, String storeName) {
+        return stripAccents(text.trim()).equalsIgnoreCase(stripAccents(storeName));
+    }
+
+    private static boolean mentionsStore(String text, String storeName) {
+        return stripAccents(text).contains(stripAccents(storeName));
+    }
+
+    private static String stripAccents(String s) {
+        return Normalizer.normalize(s, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+    }
+}
@@ -0,0 +1,143 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.chromium.HasCdp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static io.github.davidvsaraiva.merlin.monitor.Config.getEnvOrDefault;
+
+/**
+ * "Lean" browser mode for small devices ({@code LEAN_BROWSER=true}): memory saving Chrome flags, resources we
+ * never read blocked through the DevTools protocol, and a persistent profile whose HTTP cache is reused
+ * between sessions.
+ * <p>
+ * Chrome refuses to share a profile directory between two running browsers, so the profile is split in
+ * slots ({@code slot-0}, {@code slot-1}, ...) and every session takes a file lock on a free slot.
+ */
+final class LeanBrowser {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LeanBrowser.class);
+
+    static final boolean ENABLED = Boolean.parseBoolean(getEnvOrDefault("LEAN_BROWSER", "false"));
+
+    static final Path PROFILE_DIR = Path.of(getEnvOrDefault("LEAN_PROFILE_DIR",
+            Path.of(System.getProperty("user.home"), ".cache", "merlin-monitor", "chrome-profile").toString()));
+
+    private static final int PROFILE_SLOTS = 8;
+    private static final String LOCK_FILE = ".merlin-monitor.lock";
+
+    private static final List<String> DEFAULT_BLOCKED = List.of(
+            // images, fonts and media: we only read label text. Stylesheets stay, they decide which question
+            // blocks are visible and so which labels belong to the selected store
+            "*.png", "*.jpg", "*.jpeg", "*.gif", "*.webp", "*.svg", "*.ico",
+            "*.woff", "*.woff2", "*.ttf", "*.otf", "*.mp4", "*.webm",
+            // analytics and trackers
+            "*google-analytics.com*", "*googletagmanager.com*", "*doubleclick.net*",
+            "*facebook.net*", "*hotjar.com*", "*siteintercept.qualtrics.com*");
+
+    private static final List<String> MEMORY_FLAGS = List.of(
+            "--disable-dev-shm-usage",
+            "--disable-extensions",
+            "--disable-background-networking",
+            "--disable-component-update",
+            "--disable-default-apps",
+            "--disable-sync",
+            "--no-first-run",
+            "--mute-audio",
+            "--renderer-process-limit=1",
+            "--disable-features=Translate,MediaRouter,OptimizationHints,AutofillServerCommunication",
+            "--blink-settings=imagesEnabled=false",
+            "--js-flags=--max-old-space-size=128",
+            "--disk-cache-size=33554432");
+
+    private LeanBrowser() {
+    }
+
+    static List<String> blockedPatterns() {
+        String configured = getEnvOrDefault("LEAN_BLOCKED_URLS", null);
+        if (configured == null) {
+            return DEFAULT_BLOCKED;
+        }
+        return Arrays.stream(configured.split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+    }
+
+    static void applyFlags(ChromeOptions opts) {
+        opts.addArguments(MEMORY_FLAGS);
+    }
+
+    /**
+     * Locks the first free profile slot, or returns empty when all of them are in use.
+     * The caller must release the lock once the browser using the profile has quit.
+     */
+    static Optional<ProfileLock> lockProfile() {
+        return lockProfile(PROFILE_DIR, PROFILE_SLOTS);
+    }
+
+    static Optional<ProfileLock> lockProfile(Path profileDir, int slots) {
+        for (int i = 0; i < slots; i++) {
+            Path slot = profileDir.resolve("slot-" + i);
+            try {
+                Files.createDirectories(slot);
+                FileChannel channel = FileChannel.open(slot.resolve(LOCK_FILE),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                FileLock lock;
+                try {
+                    lock = channel.tryLock();
+                } catch (OverlappingFileLockException e) {
+                    lock = null;
+                }
+                if (lock != null) {
+                    LOG.debug("Using browser profile {}", slot);
+                    return Optional.of(new ProfileLock(slot, channel, lock));
+                }
+                channel.close();
+            } catch (IOException e) {
+                LOG.warn("Cannot use browser profile {}", slot, e);
+            }
+        }
+        LOG.info("All {} browser profiles under {} are in use", slots, profileDir);
+        return Optional.empty();
+    }
+
+    /**
+     * Blocks {@link #blockedPatterns()} through the DevTools protocol. Best effort: a driver without CDP
+     * support simply loads everything.
+     */
+    static void blockResources(WebDriver driver) {
+        if (!(driver instanceof HasCdp cdp)) {
+            return;
+        }
+        try {
+            cdp.executeCdpCommand("Network.enable", Map.of());
+            cdp.executeCdpCommand("Network.setBlockedURLs", Map.of("urls", blockedPatterns()));
+        } catch (RuntimeException e) {
+            LOG.warn("Could not enable request blocking", e);
+        }
+    }
+
+    record ProfileLock(Path dir, FileChannel channel, FileLock lock) {
+
+        void release() {
+            try {
+                lock.release();
+                channel.close();
+            } catch (IOException e) {
+                LOG.debug("Failed to release profile lock {}", dir, e);
+            }
+        }
+    }
+}
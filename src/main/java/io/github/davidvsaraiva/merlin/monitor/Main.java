@@ -1,16 +1,25 @@
 package io.github.davidvsaraiva.merlin.monitor;
 
+import java.io.IOException;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,33 +34,217 @@ public class Main {
 
     private static final List<String> STORES = List.of("Loulé", "Albufeira");
 
+    // workshops gone from the form and dated longer ago than this move to workshops.json.archive; 0 keeps them
+    private static final int ARCHIVE_AFTER_DAYS = Integer.parseInt(Config.getEnvOrDefault("ARCHIVE_AFTER_DAYS", "30"));
+
+    // optional HTTP feed of the state, started in scheduled mode only
+    private static final Optional<FeedServer> FEED = FeedServer.fromEnv();
+
+    // optional Prometheus endpoint for the run timings, started in scheduled mode only
+    private static final Optional<MetricsServer> METRICS_SERVER = MetricsServer.fromEnv();
+
+    // optional endpoint to trigger, inspect and cancel runs, started in scheduled mode only
+    private static final Optional<ControlServer> CONTROL = ControlServer.fromEnv();
+
     public static void main(String[] args) {
+        StartupReport.mainStarted();
         if (Arrays.asList(args).contains("--help")) {
             printHelp();
             return;
         }
+        if (Arrays.asList(args).contains("--cds-training")) {
+            try {
+                CdsTraining.run();
+            } catch (Exception e) {
+                LOG.error("CDS training failed", e);
+            }
+            return;
+        }
+        // browsers of a process that crashed would otherwise live on until the next reboot
+        BrowserSupervisor.reapOrphans();
 
         boolean once = Arrays.asList(args).contains("--once");
         long minutesInterval = parseInterval(args, 360);
 
+        String monitorConfig = Config.getEnvOrDefault("MONITOR_CONFIG", null);
+        if (monitorConfig != null && !monitorConfig.isBlank()) {
+            runConfigured(Path.of(monitorConfig), once, minutesInterval);
+            return;
+        }
+
+        // long-lived so the journal state, the outbox and warm browser sessions span runs
+        MonitorTarget target = defaultTarget();
+        StartupReport.mark("setup");
+
+        String exportJson = optionValue(args, "--export-json");
+        String importJson = optionValue(args, "--import-json");
+        if (exportJson != null || importJson != null) {
+            try {
+                if (exportJson != null) {
+                    target.repository().exportTo(Path.of(exportJson), StateCodec.JSON);
+                } else {
+                    target.repository().importFrom(Path.of(importJson));
+                }
+            } catch (IOException e) {
+                LOG.error("State conversion failed", e);
+            } finally {
+                closeAll(target);
+            }
+            return;
+        }
+
         if (once) {
             // just run once and exit
-            safeRun("Single run (--once) started", "Single run (--once) finished");
+            try {
+                runSingle(target);
+            } finally {
+                closeAll(target);
+            }
             return ; // exit
         }
-        schedulePeriodicRun(minutesInterval);
+        schedulePeriodicRun(target, minutesInterval);
+    }
+
+    /**
+     * The form from {@code FORM_TO_MONITOR_URL} with the built-in stores, kept in {@code ~/workshops.json}.
+     */
+    private static MonitorTarget defaultTarget() {
+        // browser sessions are kept warm between stores and between scheduled runs
+        WebDriverPool pool = WebDriverPool.fromEnv(FormWatcher::createWebDriver);
+        StoreScraper scraper = StoreScraper.fromEnv(MonitorTarget.createSource(FORM_URL, pool, STORE_PATH), pool.maxSize());
+        // new workshops wait in the outbox (next to the state file) until an email about them went out
+        NotificationOutbox outbox = NotificationOutbox.fromEnv(STORE_PATH, items -> sendDigest(FORM_URL, null, items));
+        return new MonitorTarget("default", FORM_URL, STORES, WorkshopsRepository.fromEnv(STORE_PATH), scraper, outbox,
+                pool, state -> FEED.ifPresent(feed -> feed.publish(state)));
     }
 
-    private static void schedulePeriodicRun(long minutesInterval) {
-        LOG.info("Starting monitor. Stores={}, intervalMinutes={}",STORES, minutesInterval);
+    private static void closeAll(MonitorTarget target) {
+        target.close();
+        target.pool().close();
+    }
+
+    private static void runSingle(MonitorTarget target) {
+        safeRun(target, target.stores(), "Single run (--once) started", "Single run (--once) finished");
+        if (!target.outbox().flush()) {
+            LOG.warn("Notifications not delivered; they stay queued for the next run");
+        }
+    }
+
+    /**
+     * Monitors the forms of a {@link MonitorConfig} file, each with its own state next to {@code ~/workshops.json}.
+     */
+    private static void runConfigured(Path configFile, boolean once, long minutesInterval) {
+        MonitorConfig config;
+        try {
+            config = MonitorConfig.load(configFile);
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Cannot read monitor config {}", configFile, e);
+            return;
+        }
+        // one pool for every form: maxBrowsers is a global limit
+        WebDriverPool pool = WebDriverPool.fromEnv(FormWatcher::createWebDriver, config.maxBrowsers());
+        Path stateDir = STORE_PATH.getParent();
+        Function<MonitorConfig.Form, MonitorTarget> targets = form -> MonitorTarget.create(form, stateDir, pool,
+                items -> sendDigest(form.url(), form.recipients(), items));
+
+        if (once) {
+            try {
+                for (MonitorConfig.Form form : config.forms()) {
+                    try (MonitorTarget target = targets.apply(form)) {
+                        runSingle(target);
+                    }
+                }
+            } finally {
+                pool.close();
+            }
+            return;
+        }
+
+        MonitorEngine engine = new MonitorEngine(configFile, config.maxBrowsers(), targets,
+                (target, stores) -> safeRun(target, stores, "Scheduled run start", "Scheduled run finished"),
+                Duration.ofMinutes(minutesInterval));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            LOG.info("Shutdown signal received; stopping monitor engine...");
+            engine.close();
+            METRICS_SERVER.ifPresent(MetricsServer::close);
+            pool.close();
+            LOG.info("Monitor engine stopped.");
+        }));
+        try {
+            LOG.info("Starting monitor from {}. Forms={}, maxBrowsers={}", configFile,
+                    config.forms().stream().map(MonitorConfig.Form::id).toList(), config.maxBrowsers());
+            METRICS_SERVER.ifPresent(Main::startMetrics);
+            engine.start();
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Cannot start monitor engine", e);
+            engine.close();
+            pool.close();
+        }
+    }
+
+    private static void schedulePeriodicRun(MonitorTarget target, long minutesInterval) {
+        LOG.info("Starting monitor. Stores={}, intervalMinutes={}", target.stores(), minutesInterval);
         // otherwise, schedule periodically
         var exec = Executors.newSingleThreadScheduledExecutor();
-        addShutdownHookForScheduler(exec);
-        Runnable task = () -> safeRun("Scheduled run start",  "Scheduled run finished");
+        addShutdownHookForScheduler(exec, target);
+        FEED.ifPresent(feed -> startFeed(feed, target));
+        METRICS_SERVER.ifPresent(Main::startMetrics);
+        target.outbox().start();
+        // scheduled and on-demand runs share the scheduler's thread
+        var runs = new RunCoordinator(exec, target.stores(),
+                (stores, trigger) -> safeRun(target, stores, trigger + " run start", trigger + " run finished"));
+        CONTROL.ifPresent(control -> startControl(control, runs));
+        if ("adaptive".equalsIgnoreCase(Config.getEnvOrDefault("SCHEDULE_MODE", "fixed"))) {
+            var schedule = AdaptiveSchedule.fromEnv(STORE_PATH, target.stores(), Duration.ofMinutes(minutesInterval));
+            exec.execute(() -> adaptiveTick(exec, runs, schedule));
+            return;
+        }
+        Runnable task = () -> runs.runScheduled(target.stores());
         exec.scheduleWithFixedDelay(task, 0, minutesInterval, TimeUnit.MINUTES);
     }
 
-    private static void addShutdownHookForScheduler(ScheduledExecutorService exec) {
+    /**
+     * Checks the stores that are due, feeds the outcome back into the schedule and sleeps until the next one.
+     */
+    private static void adaptiveTick(ScheduledExecutorService exec, RunCoordinator runs, AdaptiveSchedule schedule) {
+        List<String> due = schedule.due(Instant.now());
+        if (!due.isEmpty()) {
+            Map<String, Integer> found = runs.runScheduled(due);
+            schedule.record(due, found, Instant.now());
+        }
+        Duration wait = Duration.between(Instant.now(), schedule.nextDue());
+        LOG.info("Next check at {}", schedule.nextDue());
+        if (!exec.isShutdown()) {
+            exec.schedule(() -> adaptiveTick(exec, runs, schedule), Math.max(0, wait.toMillis()), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static void startFeed(FeedServer feed, MonitorTarget target) {
+        try {
+            feed.publish(target.repository().loadOrCreate());
+            feed.start();
+        } catch (IOException e) {
+            LOG.error("Could not start the workshop feed", e);
+        }
+    }
+
+    private static void startControl(ControlServer control, RunCoordinator runs) {
+        try {
+            control.start(runs);
+        } catch (IOException e) {
+            LOG.error("Could not start the control endpoint", e);
+        }
+    }
+
+    private static void startMetrics(MetricsServer metrics) {
+        try {
+            metrics.start();
+        } catch (IOException e) {
+            LOG.error("Could not start the metrics endpoint", e);
+        }
+    }
+
+    private static void addShutdownHookForScheduler(ScheduledExecutorService exec, MonitorTarget target) {
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             LOG.info("Shutdown signal received; stopping scheduler...");
             exec.shutdown();
@@ -69,38 +262,95 @@ public class Main {
                 Thread.currentThread().interrupt();
             }
             LOG.info("Scheduler stopped.");
+            FEED.ifPresent(FeedServer::close);
+            METRICS_SERVER.ifPresent(MetricsServer::close);
+            CONTROL.ifPresent(ControlServer::close);
+            closeAll(target);
         }));
     }
 
-    private static void safeRun(String runStartMessage, String runFinishMessage) {
+    /**
+     * @return new workshops per successfully checked store; empty when the run failed
+     */
+    private static Map<String, Integer> safeRun(MonitorTarget target, List<String> stores, String runStartMessage,
+            String runFinishMessage) {
         String runId = UUID.randomUUID().toString().substring(0, 8);
         MDC.put("runId", runId);
-        try {
+        MDC.put("form", target.id());
+        try (var phase = RunMetrics.global().phase("run")) {
             LOG.info(runStartMessage);
-            runOnce();
+            Map<String, Integer> found = runOnce(target, stores);
             LOG.info(runFinishMessage);
+            RunMetrics.global().count("runs", null, 1);
+            return found;
+        } catch (CancellationException e) {
+            LOG.info("Run cancelled before saving anything");
+            return Map.of();
         } catch (Exception e) {
             LOG.error("Run failed", e);
+            RunMetrics.global().count("run_failures", null, 1);
+            return Map.of();
         } finally {
+            LOG.info("WebDriver pool: {}", target.pool().stats());
             MDC.clear();
         }
     }
 
-    private static void runOnce() throws Exception {
-        var repo = new WorkshopsRepository(STORE_PATH);
-        var watcher = new FormWatcher(FORM_URL);
-        var notifier = EmailNotifier.fromEnv();
+    /**
+     * One run under the state's write lock, so no other process saves between this run's load and save.
+     */
+    static Map<String, Integer> runOnce(MonitorTarget target, List<String> stores) throws Exception {
+        try (var lock = target.repository().lock()) {
+            return runLocked(target, stores);
+        } catch (Exception e) {
+            // the run changes the cached state in place; don't let the next run start from a half-applied one
+            target.repository().invalidate();
+            throw e;
+        }
+    }
+
+    private static Map<String, Integer> runLocked(MonitorTarget target, List<String> stores) throws Exception {
+        // one timestamp per run: entries found together share it, which keeps the snapshot small
+        String now = Instant.now().toString();
 
-        var currentState = repo.loadOrCreate();
+        RunMetrics metrics = RunMetrics.global();
+        WorkshopsRepository repository = target.repository();
+        WorkshopState currentState;
+        try (var phase = metrics.phase("repository_load")) {
+            currentState = repository.loadOrCreate();
+        }
+        StartupReport.mark("state_load");
+        var firstSeenIndex = repository.firstSeenIndex();
         Map<String, WorkshopsRepository.StoreData> currentStatePerStore = currentState.stores();
-        List<String> newOnes = new ArrayList<>();
+        List<NotificationOutbox.Item> newOnes = new ArrayList<>();
+        Map<String, Integer> newPerStore = new LinkedHashMap<>();
+        Map<String, List<WorkshopEntry>> pastPerStore = new LinkedHashMap<>();
+
+        // 1) scrape current list of titles for every store
+        LOG.info("Fetching workshops for stores -> {} from url: {}", stores, target.formUrl());
+        Map<String, List<String>> scrapedPerStore;
+        try (var phase = metrics.phase("scrape")) {
+            // a cancel stops the run here at the latest: from the diff on, it runs to the end
+            scrapedPerStore = RunCancellation.interruptibly(() -> target.scraper().scrape(stores));
+        }
+        for (String store : stores) {
+            if (!scrapedPerStore.containsKey(store)) {
+                metrics.storeChecked(store, 0, 0, true);
+            }
+        }
+        if (scrapedPerStore.isEmpty()) {
+            throw new IllegalStateException("No store could be scraped");
+        }
 
-        for(String storeName : STORES) {
+        // merge in configured order so the resulting state doesn't depend on which store finished first
+        for(String storeName : target.stores()) {
+            List<String> scrapedTitles = scrapedPerStore.get(storeName);
+            if (scrapedTitles == null) {
+                // failed or timed out; keep its previous state and lastChecked
+                continue;
+            }
             MDC.put("store", "[" + storeName + "]");
             try {
-                LOG.info("Fetching workshops for store -> {} from url: {}", storeName, FORM_URL);
-                // 1) scrape current list of titles for this store
-                List<String> scrapedTitles = watcher.fetchWorkshopsForStore(storeName);
                 LOG.debug("Scraped {} items", scrapedTitles.size());
 
                 // 2) ensure a StoreData bucket exists
@@ -109,42 +359,125 @@ public class Main {
                         s -> new WorkshopsRepository.StoreData(new LinkedHashMap<>(), null)
                 );
 
-                // 3) diff: add any new titles
-                var byTitle = currentStoreData.getWorkshops();
-                for(String title: scrapedTitles) {
-                    if(!byTitle.containsKey(title)) {
-                        byTitle.put(title, new WorkshopEntry(title)); // firstSeen = Instant.now()
-                        newOnes.add("[" + storeName + "] " + title);
-                    }
+                // 3) diff: add any new titles, unless the store shows exactly the list it showed last time
+                List<WorkshopEntry> added;
+                if (currentStoreData.updateFingerprint(Fingerprint.ofTitles(scrapedTitles))) {
+                    added = addNewTitles(currentStoreData, scrapedTitles, now);
+                } else {
+                    LOG.debug("Same workshops as last time (version {})", currentStoreData.getVersion());
+                    metrics.count("unchanged_stores", storeName, 1);
+                    added = List.of();
+                }
+                for (WorkshopEntry entry : added) {
+                    firstSeenIndex.add(storeName, entry.title(), now);
+                    newOnes.add(new NotificationOutbox.Item(storeName, entry.title(), now));
+                }
+                newPerStore.put(storeName, added.size());
+                metrics.storeChecked(storeName, scrapedTitles.size(), added.size(), false);
+                if (ARCHIVE_AFTER_DAYS > 0) {
+                    LocalDate cutoff = LocalDate.ofInstant(Instant.parse(now), ZoneOffset.UTC).minusDays(ARCHIVE_AFTER_DAYS);
+                    pastPerStore.put(storeName, currentStoreData.removePast(cutoff));
                 }
                 // 4) update lastChecked for this store
-                currentStoreData.setLastChecked(Instant.now().toString());
+                currentStoreData.setLastChecked(now);
             } finally {
                 MDC.remove("store");
             }
 
         }
-        // 5) Save new state with refreshed lastUpdated
-        WorkshopState newState = new WorkshopState(currentStatePerStore, Instant.now().toString());
-        repo.save(newState);
-
-        // 6) Notify if anything new
+        // 5) Queue notifications before the state marks the workshops as seen, so a crash can't lose them
         if(!newOnes.isEmpty()) {
             LOG.info("Detected {} new workshops", newOnes.size());
-            String subject = "Novos workshops (" + newOnes.size() + ")";
-            String body = String.join("\n", newOnes);
-            body = body.concat("\nCheck form here: " + FORM_URL);
+            target.outbox().enqueue(newOnes);
+        } else {
+            LOG.info("No new workshops");
+        }
+
+        // 6) Archive past workshops before the save drops them from the state
+        archivePast(repository, currentStatePerStore, pastPerStore);
+
+        // 7) Save new state with refreshed lastUpdated
+        WorkshopState newState = new WorkshopState(currentStatePerStore, now);
+        try (var phase = metrics.phase("repository_save")) {
+            repository.save(newState);
+        }
+        target.onSaved().accept(newState);
+        return newPerStore;
+    }
 
+    /**
+     * Archives the workshops each store took out of the state. A store whose archive can't be written gets them
+     * back, to be archived by a later run; it doesn't fail this one.
+     */
+    static void archivePast(WorkshopsRepository repository, Map<String, WorkshopsRepository.StoreData> stores,
+            Map<String, List<WorkshopEntry>> pastPerStore) {
+        for (Map.Entry<String, List<WorkshopEntry>> past : pastPerStore.entrySet()) {
             try {
-                notifier.send(subject, body);
-                LOG.info(newOnes.size() + " new workshops found).");
-            } catch (Exception e) {
-                LOG.error("Email failed");
+                repository.archive(past.getKey(), past.getValue());
+            } catch (IOException e) {
+                LOG.error("Failed to archive {} past workshops of store {}, keeping them for now",
+                        past.getValue().size(), past.getKey(), e);
+                var workshops = stores.get(past.getKey()).getWorkshops();
+                past.getValue().forEach(entry -> workshops.put(entry.title(), entry));
             }
-        } else {
-            LOG.info("No new workshops");
         }
+    }
 
+    /**
+     * Adds the scraped titles the store doesn't know yet, first seen {@code now}. A title that only differs
+     * from a known one in accents, case, spacing or punctuation ({@link WorkshopTitle#key}) is the known
+     * workshop. Known workshops missing from the list are marked removed at {@code now}, and removed ones
+     * listed again are marked listed.
+     *
+     * @return the added entries, in scraped order
+     */
+    static List<WorkshopEntry> addNewTitles(WorkshopsRepository.StoreData storeData, List<String> scrapedTitles, String now) {
+        var byTitle = storeData.getWorkshops();
+        // only built when a title isn't known as spelled
+        Map<String, String> byKey = null;
+        Set<String> listed = new HashSet<>();
+        List<WorkshopEntry> added = new ArrayList<>();
+        for(String title: scrapedTitles) {
+            String known = title;
+            if (!byTitle.containsKey(title)) {
+                byKey = byKey == null ? storeData.titlesByKey() : byKey;
+                known = byKey.get(WorkshopTitle.key(title));
+            }
+            if (known == null) {
+                WorkshopEntry entry = new WorkshopEntry(title, now);
+                byTitle.put(title, entry);
+                byKey.put(WorkshopTitle.key(title), title);
+                listed.add(title);
+                added.add(entry);
+            } else {
+                listed.add(known);
+                byTitle.computeIfPresent(known, (t, e) -> e.listed() ? e : e.relisted());
+            }
+        }
+        String lastSeen = storeData.getLastChecked();
+        byTitle.replaceAll((title, e) -> e.listed() && !listed.contains(title) ? e.removed(lastSeen, now) : e);
+        return added;
+    }
+
+    /**
+     * Sends one email for everything pending in a form's outbox, possibly found over several runs.
+     *
+     * @param recipients overrides {@code SMTP_TO} when not empty
+     */
+    private static void sendDigest(String formUrl, List<String> recipients, List<NotificationOutbox.Item> items)
+            throws Exception {
+        sendDigest(EmailNotifier.fromEnv(recipients), formUrl, items);
+    }
+
+    static void sendDigest(EmailNotifier notifier, String formUrl, List<NotificationOutbox.Item> items) throws Exception {
+        String subject = "Novos workshops (" + items.size() + ")";
+        StringBuilder body = new StringBuilder();
+        for (NotificationOutbox.Item item : items) {
+            body.append("[").append(item.store()).append("] ").append(item.title()).append("\n");
+        }
+        body.append("Check form here: ").append(formUrl);
+        notifier.send(subject, body.toString());
+        LOG.info("Email sent for {} new workshops", items.size());
     }
 
     private static long parseInterval(String[] args, long defaultMinutes) {
@@ -156,6 +489,15 @@ public class Main {
         return defaultMinutes;
     }
 
+    private static String optionValue(String[] args, String option) {
+        for(int i = 0; i < args.length - 1; i++) {
+            if(option.equals(args[i])) {
+                return args[i + 1];
+            }
+        }
+        return null;
+    }
+
     private static void printHelp() {
         System.out.println("""
             Workshop Monitor - Form Watcher
@@ -166,6 +508,10 @@ public class Main {
             Options:
               --once                   Run a single check and exit (cron mode)
               --interval-minutes <N>   Set interval between checks (default: 360 = 6 hours)
+              --export-json <file>     Write the stored state to <file> as pretty JSON and exit
+              --import-json <file>     Replace the stored state with <file> (JSON or binary) and exit
+              --cds-training           Run offline through a --once run and exit; for recording a class data
+                                       sharing archive with -XX:ArchiveClassesAtExit (see README)
               --help                   Show this help message
 
             Environment variables (SMTP):
@@ -176,13 +522,70 @@ public class Main {
               SMTP_PASSWORD          SMTP password or app password
               SMTP_FROM              From email address
               SMTP_TO                To email address
+              SMTP_DELIVERY          individual|bcc (default individual). One message per recipient, or a
+                                     single message with every recipient in BCC; both over one connection
+              SMTP_CONNECT_TIMEOUT_MS  SMTP connect timeout (default 10000)
+              SMTP_READ_TIMEOUT_MS     SMTP read/write timeout (default 30000)
             
             Environment variable (Selenium):
               HEADLESS_MODE            run browser in headless mode (default: true)
               FORM_TO_MONITOR_URL      form to monitor URL
+              FETCH_ENGINE             selenium|http (default selenium). http reads the form without a
+                                       browser and falls back to selenium for stores it can't parse
               IS_CHROMIUM              true|false (default false)
               CHROMIUM_BROWSER_PATH    path to chromium browser
               CHROMIUM_DRIVER_PATH     path to chromium driver
+              LEAN_BROWSER             true|false (default false). Memory saving flags, blocks images, fonts,
+                                       media and trackers, reuses a persistent browser profile and cache
+              LEAN_PROFILE_DIR         persistent profiles for lean mode (default ~/.cache/merlin-monitor/chrome-profile)
+              LEAN_BLOCKED_URLS        comma separated URL patterns to block in lean mode (replaces the defaults)
+              WEBDRIVER_POOL_SIZE              max browser sessions kept alive (default 1)
+              WEBDRIVER_POOL_MAX_IDLE_MINUTES  quit a session idle for longer than this (default 420)
+              WEBDRIVER_POOL_MAX_USES          recycle a session after N scrapes (default 50)
+              SCRAPE_MODE              single-page|parallel (default single-page). parallel scrapes
+                                       up to WEBDRIVER_POOL_SIZE stores at the same time
+              STORE_TIMEOUT_SECONDS    per store timeout in parallel mode (default 180)
+              BROWSER_PAGE_LOAD_TIMEOUT_SECONDS  longest page load (default 60)
+              SCRAPE_DEADLINE_SECONDS  kill the browser of a scrape still running after this (default 300)
+              BROWSER_MEMORY_LIMIT_MB  recycle a browser session using more memory than this (default: off)
+              BROWSER_CGROUP           writable cgroup v2 directory for the browsers, capped at
+                                       BROWSER_MEMORY_LIMIT_MB (default: off)
+
+            Environment variables (state):
+              STATE_STORAGE            file|journal (default file). journal appends changes to
+                                       workshops.json.journal and folds them into workshops.json
+                                       once it passes JOURNAL_COMPACT_BYTES or JOURNAL_COMPACT_RECORDS
+              JOURNAL_COMPACT_BYTES    journal size that triggers a compaction (default 262144)
+              JOURNAL_COMPACT_RECORDS  journal records that trigger a compaction (default 2000)
+              ARCHIVE_AFTER_DAYS       move workshops gone from the form for this many days past their date
+                                       to workshops.json.archive (default 30, 0 keeps them)
+              SCHEDULE_MODE            fixed|adaptive (default fixed). adaptive learns an interval per store,
+                                       starting from --interval-minutes: shorter after new workshops,
+                                       longer while nothing changes
+              ADAPTIVE_MIN_MINUTES     shortest adaptive interval (default 30)
+              ADAPTIVE_MAX_MINUTES     longest adaptive interval (default 720)
+              ADAPTIVE_JITTER          random spread of each interval, 0.1 = +/-10% (default 0.1)
+              SCHEDULE_WINDOW          only check between these local times, e.g. 07:00-23:00 (default: any time)
+              OUTBOX_RETRY_INITIAL_SECONDS  first retry delay of a failed email (default 30), doubling
+              OUTBOX_RETRY_MAX_MINUTES      longest retry delay (default 60)
+              STATE_FORMAT             json|smile (default json). smile writes a compact binary snapshot;
+                                       the format of an existing file is detected when it is read
+
+            Environment variables (feed and metrics):
+              FEED_PORT                serve the state over HTTP on this port in scheduled mode (default: off)
+              FEED_BIND                address to listen on (default 127.0.0.1)
+              FEED_THREADS             request handler threads (default 4)
+              METRICS_PORT             serve run timings and counters in the Prometheus format at /metrics
+                                       in scheduled mode (default: off)
+              METRICS_BIND             address to listen on (default 127.0.0.1)
+              CONTROL_PORT             accept /run, /status and /cancel requests on this port in scheduled
+                                       mode (default: off)
+              CONTROL_BIND             address to listen on (default 127.0.0.1)
+
+            Environment variables (several forms):
+              MONITOR_CONFIG           JSON file with "maxBrowsers" and "forms" (id, url, stores and optional
+                                       intervalMinutes, recipients); each form keeps ~/workshops-<id>.json.
+                                       Replaces FORM_TO_MONITOR_URL and is reloaded when the file changes
 
             Logging:
               LOG_LEVEL       Root log level (TRACE, DEBUG, INFO, WARN, ERROR). Default: INFO
@@ -190,6 +593,8 @@ public class Main {
             Data:
               workshops.json  Stored in your home directory (~). Keeps track of seen workshops
                                and acts as the feed for an Android app or other clients.
+                               With FEED_PORT set it is also served at /workshops.json, with
+                               ETag/If-None-Match, gzip and ?since=<instant> for new entries only.
 
             Monitored stores:
               Loulé, Albufeira
@@ -197,6 +602,7 @@ public class Main {
             Examples:
               java -jar workshop-monitor.jar --interval-minutes 120
               java -jar workshop-monitor.jar --once
+              java -XX:SharedArchiveFile=workshop-monitor.jsa -jar workshop-monitor.jar --once
             """);
     }
 }
\ No newline at end of file
@@ -0,0 +1,87 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static io.github.davidvsaraiva.merlin.monitor.Config.getEnvOrDefault;
+
+/**
+ * Serves {@link RunMetrics} at {@code GET /metrics} in the Prometheus text format.
+ */
+public class MetricsServer implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsServer.class);
+
+    static final String PATH = "/metrics";
+
+    private final InetSocketAddress address;
+    private final RunMetrics metrics;
+    private HttpServer server;
+
+    public MetricsServer(InetSocketAddress address, RunMetrics metrics) {
+        this.address = address;
+        this.metrics = metrics;
+    }
+
+    /**
+     * A server configured from {@code METRICS_PORT} and {@code METRICS_BIND}; empty when no port is set.
+     */
+    public static Optional<MetricsServer> fromEnv() {
+        String port = getEnvOrDefault("METRICS_PORT", null);
+        if (port == null || port.isBlank()) {
+            return Optional.empty();
+        }
+        String bind = getEnvOrDefault("METRICS_BIND", "127.0.0.1");
+        return Optional.of(new MetricsServer(new InetSocketAddress(bind, Integer.parseInt(port.trim())), RunMetrics.global()));
+    }
+
+    public synchronized void start() throws IOException {
+        server = HttpServer.create(address, 0);
+        // scraped every few seconds at most: the server's own dispatcher thread is enough
+        server.createContext(PATH, this::handle);
+        server.start();
+        LOG.info("Serving metrics on http://{}:{}{}", address.getHostString(), port(), PATH);
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            if (!PATH.equals(exchange.getRequestURI().getPath())) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            byte[] body = metrics.prometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (RuntimeException e) {
+            LOG.warn("Metrics request failed", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+}
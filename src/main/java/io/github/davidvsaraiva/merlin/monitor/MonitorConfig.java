@@ -0,0 +1,72 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The forms to monitor, read from the JSON file in {@code MONITOR_CONFIG}:
+ * <pre>
+ * {
+ *   "maxBrowsers": 2,
+ *   "forms": [
+ *     {"id": "merlin", "url": "https://...", "stores": ["Loulé", "Albufeira"],
+ *      "intervalMinutes": 360, "recipients": ["someone@example.com"]}
+ *   ]
+ * }
+ * </pre>
+ * {@code maxBrowsers} defaults to 1, {@code intervalMinutes} to {@code --interval-minutes} and {@code recipients}
+ * to {@code SMTP_TO}.
+ */
+public record MonitorConfig(int maxBrowsers, List<Form> forms) {
+
+    private static final Pattern ID = Pattern.compile("[A-Za-z0-9._-]+");
+
+    public MonitorConfig {
+        if (maxBrowsers == 0) {
+            maxBrowsers = 1;
+        }
+    }
+
+    public record Form(String id, String url, List<String> stores, Long intervalMinutes, List<String> recipients) {
+    }
+
+    public static MonitorConfig load(Path file) throws IOException {
+        MonitorConfig config = new ObjectMapper().readValue(file.toFile(), MonitorConfig.class);
+        config.validate();
+        return config;
+    }
+
+    private void validate() {
+        if (maxBrowsers < 1) {
+            throw new IllegalArgumentException("maxBrowsers must be at least 1");
+        }
+        if (forms == null || forms.isEmpty()) {
+            throw new IllegalArgumentException("No forms configured");
+        }
+        Set<String> ids = new HashSet<>();
+        for (Form form : forms) {
+            // the id names the form's state files
+            if (form.id() == null || !ID.matcher(form.id()).matches()) {
+                throw new IllegalArgumentException("Form id must match " + ID + ": " + form.id());
+            }
+            if (!ids.add(form.id())) {
+                throw new IllegalArgumentException("Duplicate form id " + form.id());
+            }
+            if (form.url() == null || form.url().isBlank()) {
+                throw new IllegalArgumentException("Form " + form.id() + " has no url");
+            }
+            if (form.stores() == null || form.stores().isEmpty()) {
+                throw new IllegalArgumentException("Form " + form.id() + " has no stores");
+            }
+            if (form.intervalMinutes() != null && form.intervalMinutes() < 1) {
+                throw new IllegalArgumentException("Form " + form.id() + " has an interval below one minute");
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs every form of a {@link MonitorConfig} on one shared scheduler and picks up changes to the config file
+ * while running.
+ * <p>
+ * The scheduler has one thread per browser allowed, and every target scrapes through the same browser pool, so
+ * no more than {@code maxBrowsers} browsers are ever alive however many forms are configured; due targets simply
+ * wait their turn. On reload, removed or changed forms are stopped and added or changed ones started. A form stopped
+ * in the middle of a run is closed once that run finishes, and a changed form only starts running once its previous
+ * version is closed, since both use the same state file. {@code maxBrowsers} only takes effect on restart.
+ */
+public class MonitorEngine implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MonitorEngine.class);
+
+    private static final Duration DEBOUNCE = Duration.ofMillis(300);
+
+    /**
+     * Checks {@code stores} of {@code target}, returning the new workshops per store.
+     */
+    @FunctionalInterface
+    public interface Runner {
+        Map<String, Integer> run(MonitorTarget target, List<String> stores);
+    }
+
+    private final Path configFile;
+    private final Function<MonitorConfig.Form, MonitorTarget> targets;
+    private final Runner runner;
+    private final Duration defaultInterval;
+    private final int maxBrowsers;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final Map<String, Running> running = new LinkedHashMap<>();
+    private Thread watcher;
+    private WatchService watchService;
+
+    private static final class Running {
+        final MonitorConfig.Form form;
+        final MonitorTarget target;
+        /** completes once the target is closed */
+        final CompletableFuture<Void> closed = new CompletableFuture<>();
+        /** the previous version of a changed form, which must be closed before this one runs */
+        final CompletableFuture<Void> previousClosed;
+        ScheduledFuture<?> future;
+        // guarded by this; held only to flip them, never for a whole run
+        boolean stopped;
+        boolean inRun;
+
+        Running(MonitorConfig.Form form, MonitorTarget target, CompletableFuture<Void> previousClosed) {
+            this.form = form;
+            this.target = target;
+            this.previousClosed = previousClosed;
+        }
+    }
+
+    public MonitorEngine(Path configFile, int maxBrowsers, Function<MonitorConfig.Form, MonitorTarget> targets,
+            Runner runner, Duration defaultInterval) {
+        this.configFile = configFile;
+        this.maxBrowsers = maxBrowsers;
+        this.targets = targets;
+        this.runner = runner;
+        this.defaultInterval = defaultInterval;
+        AtomicInteger count = new AtomicInteger();
+        // not daemon threads: in scheduled mode they are what keeps the process alive
+        this.scheduler = new ScheduledThreadPoolExecutor(maxBrowsers,
+                r -> new Thread(r, "monitor-" + count.incrementAndGet()));
+        scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Starts every configured form and watches the config file for changes.
+     */
+    public void start() throws IOException {
+        apply(MonitorConfig.load(configFile));
+        watchService = FileSystems.getDefault().newWatchService();
+        configFile.toAbsolutePath().getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watcher = new Thread(this::watch, "config-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Reads the config file again and applies the differences. A file that doesn't parse or validate is ignored.
+     */
+    public void reload() {
+        MonitorConfig config;
+        try {
+            config = MonitorConfig.load(configFile);
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Ignoring invalid monitor config {}: {}", configFile, e.getMessage());
+            return;
+        }
+        apply(config);
+    }
+
+    private void apply(MonitorConfig config) {
+        if (config.maxBrowsers() != maxBrowsers) {
+            LOG.warn("maxBrowsers changed to {}; still using {} until restart", config.maxBrowsers(), maxBrowsers);
+        }
+        Map<String, MonitorConfig.Form> wanted = new LinkedHashMap<>();
+        config.forms().forEach(form -> wanted.put(form.id(), form));
+
+        Map<String, Running> stopping = new LinkedHashMap<>();
+        synchronized (this) {
+            running.values().removeIf(r -> {
+                if (Objects.equals(wanted.get(r.form.id()), r.form)) {
+                    return false;
+                }
+                LOG.info("Stopping form {}", r.form.id());
+                stopping.put(r.form.id(), r);
+                return true;
+            });
+            wanted.forEach((id, form) -> {
+                if (running.containsKey(id)) {
+                    return;
+                }
+                LOG.info("Starting form {} ({} stores)", id, form.stores().size());
+                Running previous = stopping.get(id);
+                Running r = new Running(form, targets.apply(form),
+                        previous != null ? previous.closed : CompletableFuture.completedFuture(null));
+                r.previousClosed.thenRun(r.target.outbox()::start);
+                Duration interval = form.intervalMinutes() != null ? Duration.ofMinutes(form.intervalMinutes()) : defaultInterval;
+                r.future = scheduler.scheduleWithFixedDelay(() -> runTarget(r), 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+                running.put(id, r);
+            });
+        }
+        // a run in progress can take minutes; don't hold the engine meanwhile
+        stopping.values().forEach(this::stop);
+    }
+
+    private void runTarget(Running r) {
+        try {
+            r.previousClosed.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            // closing never fails the future
+        }
+        synchronized (r) {
+            if (r.stopped) {
+                return;
+            }
+            r.inRun = true;
+        }
+        try {
+            runner.run(r.target, r.target.stores());
+        } catch (RuntimeException e) {
+            // an exception would cancel the periodic task
+            LOG.error("Run of form {} failed", r.form.id(), e);
+        } finally {
+            boolean close;
+            synchronized (r) {
+                r.inRun = false;
+                close = r.stopped;
+            }
+            if (close) {
+                closeTarget(r);
+            }
+        }
+    }
+
+    /**
+     * Stops scheduling the form and closes its target, right away or, when a run is in progress, once it finishes.
+     */
+    private void stop(Running r) {
+        r.future.cancel(false);
+        boolean close;
+        synchronized (r) {
+            if (r.stopped) {
+                return;
+            }
+            r.stopped = true;
+            close = !r.inRun;
+        }
+        if (close) {
+            closeTarget(r);
+        }
+    }
+
+    private void closeTarget(Running r) {
+        try {
+            r.target.close();
+        } finally {
+            r.closed.complete(null);
+        }
+    }
+
+    public synchronized List<String> runningForms() {
+        return List.copyOf(running.keySet());
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean ours = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.context() instanceof Path changed && changed.equals(configFile.getFileName())) {
+                        ours = true;
+                    }
+                }
+                key.reset();
+                if (ours) {
+                    // editors write in several steps; wait for the file to settle
+                    Thread.sleep(DEBOUNCE.toMillis());
+                    LOG.info("Monitor config {} changed, reloading", configFile);
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closing
+        }
+    }
+
+    @Override
+    public void close() {
+        if (watcher != null) {
+            watcher.interrupt();
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                LOG.debug("Failed to close config watcher", e);
+            }
+        }
+        List<Running> stopping;
+        synchronized (this) {
+            stopping = List.copyOf(running.values());
+            running.clear();
+        }
+        stopping.forEach(this::stop);
+        // let runs in progress finish and close their targets
+        stopping.forEach(r -> r.closed.join());
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(10, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static io.github.davidvsaraiva.merlin.monitor.Config.getEnvOrDefault;
+
+/**
+ * One monitored form: its stores and everything a run needs, with state, journal, outbox, schedule and timeout
+ * files of its own so forms never share state.
+ *
+ * @param onSaved called with the new state after every save (e.g. to publish the feed)
+ */
+public record MonitorTarget(String id, String formUrl, List<String> stores, WorkshopsRepository repository,
+                            StoreScraper scraper, NotificationOutbox outbox, WebDriverPool pool,
+                            Consumer<WorkshopState> onSaved) implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MonitorTarget.class);
+
+    /**
+     * A target for a configured form, keeping its state in {@code <stateDir>/workshops-<id>.json}.
+     */
+    public static MonitorTarget create(MonitorConfig.Form form, Path stateDir, WebDriverPool pool,
+            NotificationOutbox.Delivery delivery) {
+        Path statePath = stateDir.resolve("workshops-" + form.id() + ".json");
+        StoreScraper scraper = StoreScraper.fromEnv(createSource(form.url(), pool, statePath), pool.maxSize());
+        return new MonitorTarget(form.id(), form.url(), List.copyOf(form.stores()), WorkshopsRepository.fromEnv(statePath),
+                scraper, NotificationOutbox.fromEnv(statePath, delivery), pool, state -> { });
+    }
+
+    /**
+     * The browser source for {@code formUrl}, behind the plain HTTP reader when {@code FETCH_ENGINE=http}. The
+     * timeouts it learns are kept in {@code <statePath>.timeouts}.
+     */
+    public static WorkshopSource createSource(String formUrl, WebDriverPool pool, Path statePath) {
+        WorkshopSource browser = new FormWatcher(formUrl, pool, statePath.resolveSibling(statePath.getFileName() + ".timeouts"));
+        String engine = getEnvOrDefault("FETCH_ENGINE", "selenium");
+        LOG.debug("Using fetch engine {}", engine);
+        return "http".equalsIgnoreCase(engine) ? new HttpFormFetcher(formUrl, browser) : browser;
+    }
+
+    /**
+     * Closes what belongs to this form; the shared browser pool stays open.
+     */
+    @Override
+    public void close() {
+        outbox.close();
+        scraper.close();
+        repository.close();
+    }
+}
@@ -0,0 +1,246 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static io.github.davidvsaraiva.merlin.monitor.Config.getEnvOrDefault;
+
+/**
+ * Durable queue of "new workshop" notifications, kept in {@code <state file>.outbox}.
+ * <p>
+ * Runs enqueue what they found (before the state marking it as seen is saved) and return; a background
+ * dispatcher delivers everything pending as a single digest and retries with exponential backoff when delivery
+ * fails. Delivery is at least once: an item leaves the outbox only after a successful delivery, and items are
+ * deduplicated by store and title against what is pending and what was delivered recently.
+ */
+public class NotificationOutbox implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NotificationOutbox.class);
+
+    private static final int REMEMBERED_DELIVERIES = 1000;
+
+    /**
+     * Delivers a digest of pending items; throwing leaves them in the outbox for a retry.
+     */
+    @FunctionalInterface
+    public interface Delivery {
+        void deliver(List<Item> items) throws Exception;
+    }
+
+    public record Item(String store, String title, String firstSeen) {
+
+        String key() {
+            return store + "|" + title;
+        }
+    }
+
+    private record Contents(List<Item> pending, List<String> delivered) {
+    }
+
+    private final Path file;
+    private final Delivery delivery;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ScheduledThreadPoolExecutor dispatcher;
+    private final Object deliveryLock = new Object();
+
+    private final Map<String, Item> pending = new LinkedHashMap<>();
+    private final Deque<String> delivered = new ArrayDeque<>();
+    private int failures;
+    private ScheduledFuture<?> nextAttempt;
+
+    public NotificationOutbox(Path file, Delivery delivery, Duration initialBackoff, Duration maxBackoff) {
+        this.file = file;
+        this.delivery = delivery;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.dispatcher = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "outbox-dispatcher");
+            t.setDaemon(true);
+            return t;
+        });
+        // on close, let a delivery in progress finish but drop retries waiting for their backoff
+        dispatcher.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        load();
+    }
+
+    public static NotificationOutbox fromEnv(Path statePath, Delivery delivery) {
+        Duration initial = Duration.ofSeconds(Long.parseLong(getEnvOrDefault("OUTBOX_RETRY_INITIAL_SECONDS", "30")));
+        Duration max = Duration.ofMinutes(Long.parseLong(getEnvOrDefault("OUTBOX_RETRY_MAX_MINUTES", "60")));
+        return new NotificationOutbox(statePath.resolveSibling(statePath.getFileName() + ".outbox"), delivery, initial, max);
+    }
+
+    /**
+     * Starts background delivery, beginning with whatever a previous process left pending.
+     */
+    public synchronized void start() {
+        if (!pending.isEmpty()) {
+            LOG.info("{} notifications pending from a previous run", pending.size());
+        }
+        schedule(Duration.ZERO);
+    }
+
+    /**
+     * Persists the items (skipping ones already pending or recently delivered) and wakes the dispatcher.
+     * Returns once they are on disk.
+     */
+    public synchronized void enqueue(List<Item> items) throws IOException {
+        int added = 0;
+        for (Item item : items) {
+            if (!pending.containsKey(item.key()) && !delivered.contains(item.key())) {
+                pending.put(item.key(), item);
+                added++;
+            }
+        }
+        if (added == 0) {
+            return;
+        }
+        persist();
+        LOG.debug("Queued {} notifications ({} pending)", added, pending.size());
+        if (failures == 0) {
+            schedule(Duration.ZERO);
+        }
+    }
+
+    public synchronized List<Item> pending() {
+        return List.copyOf(pending.values());
+    }
+
+    /**
+     * One delivery attempt on the calling thread, e.g. before a {@code --once} run exits.
+     *
+     * @return true when nothing is left pending
+     */
+    public boolean flush() {
+        dispatch();
+        synchronized (this) {
+            return pending.isEmpty();
+        }
+    }
+
+    private void dispatch() {
+        // one delivery at a time, whether from the dispatcher or flush()
+        synchronized (deliveryLock) {
+            deliverPending();
+        }
+    }
+
+    private void deliverPending() {
+        List<Item> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = List.copyOf(pending.values());
+        }
+        try {
+            // deliver outside the lock so runs can keep enqueueing meanwhile
+            delivery.deliver(batch);
+        } catch (Exception e) {
+            synchronized (this) {
+                failures++;
+                Duration backoff = backoff(failures);
+                LOG.warn("Delivering {} notifications failed (attempt {}), retrying in {}s: {}",
+                        batch.size(), failures, backoff.toSeconds(), e.toString());
+                schedule(backoff);
+            }
+            return;
+        }
+        synchronized (this) {
+            for (Item item : batch) {
+                pending.remove(item.key());
+                delivered.addLast(item.key());
+            }
+            while (delivered.size() > REMEMBERED_DELIVERIES) {
+                delivered.removeFirst();
+            }
+            failures = 0;
+            try {
+                persist();
+            } catch (IOException e) {
+                // delivered but still on disk as pending: sent again after a restart, which at-least-once allows
+                LOG.error("Failed to update notification outbox {}", file, e);
+            }
+            LOG.info("Delivered {} notifications", batch.size());
+            if (!pending.isEmpty()) {
+                schedule(Duration.ZERO);
+            }
+        }
+    }
+
+    Duration backoff(int failures) {
+        long factor = 1L << Math.min(failures - 1, 20);
+        Duration delay = initialBackoff.multipliedBy(factor);
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    private void schedule(Duration delay) {
+        if (dispatcher.isShutdown()) {
+            return;
+        }
+        // an attempt that is already running doesn't count, it may be the one asking for a retry
+        if (nextAttempt != null && !nextAttempt.isDone() && nextAttempt.getDelay(TimeUnit.MILLISECONDS) > 0) {
+            if (nextAttempt.getDelay(TimeUnit.MILLISECONDS) <= delay.toMillis()) {
+                return;
+            }
+            nextAttempt.cancel(false);
+        }
+        nextAttempt = dispatcher.schedule(this::dispatch, delay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            Contents contents = mapper.readValue(file.toFile(), Contents.class);
+            if (contents.pending() != null) {
+                contents.pending().forEach(item -> pending.put(item.key(), item));
+            }
+            if (contents.delivered() != null) {
+                delivered.addAll(contents.delivered());
+            }
+        } catch (IOException e) {
+            LOG.error("Cannot read notification outbox {}; starting empty", file, e);
+        }
+    }
+
+    private void persist() throws IOException {
+        byte[] json = mapper.writeValueAsBytes(new Contents(new ArrayList<>(pending.values()), new ArrayList<>(delivered)));
+        WorkshopsRepository.writeAtomically(file, json);
+    }
+
+    /**
+     * Stops the dispatcher. Pending items stay in the outbox file for the next start.
+     */
+    @Override
+    public void close() {
+        dispatcher.shutdown();
+        try {
+            dispatcher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (!pending.isEmpty()) {
+                LOG.info("{} notifications left in {}", pending.size(), file);
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+/**
+ * JavaScript run inside the form page by {@link FormWatcher}.
+ * <p>
+ * Every script does its DOM work in the page and returns plain values, so one {@code executeScript} call
+ * replaces what used to be a WebDriver round trip per element.
+ */
+final class PageScripts {
+
+    private PageScripts() {
+    }
+
+    /**
+     * Helpers shared by the scripts below: accent-insensitive text comparison and a visibility check that
+     * mirrors {@code WebElement.isDisplayed()} closely enough for the form.
+     */
+    private static final String HELPERS = """
+            const strip = s => (s || '').normalize('NFD').replace(/\\p{M}/gu, '').trim();
+            const visible = el => {
+                if (!el.getClientRects().length) return false;
+                const style = getComputedStyle(el);
+                return style.visibility !== 'hidden' && style.display !== 'none';
+            };
+            """;
+
+    /**
+     * Defines {@code readWorkshops(store)}, returning {@code {titles: [...], scoped: boolean}} with the visible,
+     * trimmed, non-blank workshop labels; {@code scoped} tells whether they came from the question block titled
+     * with the store name. Falls back to the XPath lookup when the CSS selector finds nothing.
+     */
+    private static final String WORKSHOPS_READER = """
+            const readWorkshops = storeName => {
+                const store = strip(storeName);
+                const selector = 'ul.ChoiceStructure li.Selection span.LabelWrapper > label';
+                const texts = nodes => Array.from(nodes).filter(visible)
+                        .map(n => n.innerText.trim()).filter(t => t.length > 0);
+                for (const question of document.querySelectorAll('div.QuestionOuter')) {
+                    const text = question.querySelector('.QuestionText');
+                    if (text && strip(text.textContent).includes(store) && visible(question)) {
+                        return {titles: texts(question.querySelectorAll(selector)), scoped: true};
+                    }
+                }
+                let titles = texts(document.querySelectorAll(selector));
+                if (titles.length === 0) {
+                    const xpath = "//ul[contains(@class,'ChoiceStructure')]"
+                            + "[not(ancestor-or-self::*[@aria-hidden='true' or contains(@style,'display: none') or contains(@style,'visibility: hidden')])]"
+                            + "//li[contains(@class,'Selection')]//span[contains(@class,'LabelWrapper')]/label";
+                    const found = document.evaluate(xpath, document, null, XPathResult.ORDERED_NODE_SNAPSHOT_TYPE, null);
+                    titles = [];
+                    for (let i = 0; i < found.snapshotLength; i++) {
+                        const t = found.snapshotItem(i).textContent.trim();
+                        if (t.length > 0) titles.push(t);
+                    }
+                }
+                return {titles: titles, scoped: false};
+            };
+            """;
+
+    /**
+     * Defines {@code whenReady(find, timeoutMs, done, recheckMs)}: calls {@code done(result)} as soon as
+     * {@code find()} returns something, re-checking on every DOM mutation instead of polling, or {@code done(null)}
+     * once {@code timeoutMs} elapses. With {@code recheckMs}, {@code find()} also runs that often while the page is
+     * quiet, for conditions that depend on time.
+     */
+    private static final String WHEN_READY = """
+            const whenReady = (find, timeoutMs, done, recheckMs) => {
+                let finished = false;
+                let observer = null;
+                let timer = null;
+                let recheck = null;
+                const finish = result => {
+                    if (finished) return;
+                    finished = true;
+                    if (observer) observer.disconnect();
+                    clearTimeout(timer);
+                    clearInterval(recheck);
+                    done(result);
+                };
+                const check = () => {
+                    const result = find();
+                    if (result) finish(result);
+                };
+                observer = new MutationObserver(check);
+                observer.observe(document.documentElement, {childList: true, subtree: true, characterData: true,
+                        attributes: true, attributeFilter: ['class', 'style', 'hidden', 'aria-hidden']});
+                timer = setTimeout(() => finish(null), timeoutMs);
+                if (recheckMs) recheck = setInterval(check, recheckMs);
+                check();
+            };
+            """;
+
+    /**
+     * Arguments: store name. Returns what {@code readWorkshops} returns.
+     */
+    static final String READ_WORKSHOPS = HELPERS + WORKSHOPS_READER + """
+            return readWorkshops(arguments[0]);
+            """;
+
+    /**
+     * Async. Arguments: timeout in millis. Waits for the store dropdown, watching the {@code QR~QID18} id and
+     * the "Selecione a sua loja" label at the same time. Returns {@code {element, via: 'id'|'label'}}, or
+     * {@code null} on timeout.
+     */
+    static final String WAIT_FOR_DROPDOWN = WHEN_READY + """
+            const done = arguments[arguments.length - 1];
+            const byLabel = "//label[contains(normalize-space(.), 'Selecione a sua loja')]/following::select[1]";
+            whenReady(() => {
+                const byId = document.getElementById('QR~QID18');
+                if (byId) return {element: byId, via: 'id'};
+                const label = document.evaluate(byLabel, document, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null);
+                return label.singleNodeValue ? {element: label.singleNodeValue, via: 'label'} : null;
+            }, arguments[0], done);
+            """;
+
+    /**
+     * Async. Arguments: store name, titles read for the previously selected store, settle window and timeout in
+     * millis. Waits until the store's list is rendered (and differs from the previous store's list unless it comes
+     * from the store's own question block), or until what the page shows, even an empty list or the previous
+     * store's, has not changed for the settle window. Returns {@code {titles, scoped, settled, timedOut,
+     * extractionMillis}}, the last being how long reading the returned titles took in the page.
+     */
+    static final String WAIT_FOR_WORKSHOPS = HELPERS + WORKSHOPS_READER + WHEN_READY + """
+            const storeName = arguments[0];
+            const previous = arguments[1];
+            const done = arguments[arguments.length - 1];
+            const settleMs = arguments[2];
+            const same = titles => titles.length === previous.length && titles.every((t, i) => t === previous[i]);
+            const timedRead = () => {
+                const started = performance.now();
+                const read = readWorkshops(storeName);
+                read.millis = performance.now() - started;
+                return read;
+            };
+            let shown = null;
+            let shownSince = performance.now();
+            whenReady(() => {
+                const read = timedRead();
+                if (read.titles.length > 0 && (read.scoped || !same(read.titles))) return read;
+                const key = JSON.stringify(read.titles) + read.scoped;
+                if (key !== shown) {
+                    shown = key;
+                    shownSince = performance.now();
+                }
+                // the form is done reacting to the selection: no workshops, or the same ones as the previous store
+                if (performance.now() - shownSince >= settleMs) {
+                    read.settled = true;
+                    return read;
+                }
+                return null;
+            }, arguments[3], read => {
+                const last = read || timedRead();
+                done({titles: last.titles, scoped: last.scoped, settled: !!(read && read.settled), timedOut: !read,
+                        extractionMillis: last.millis});
+            }, Math.max(50, settleMs / 4));
+            """;
+
+    /**
+     * Arguments: the store select element and the store name. Selects the option whose text matches the
+     * store (exactly, then ignoring accents) and fires the events the form listens to. Returns the selected
+     * option text, or {@code null} when the store is not in the dropdown.
+     */
+    static final String SELECT_STORE = HELPERS + """
+            const select = arguments[0];
+            const wanted = arguments[1].trim();
+            const options = Array.from(select.options);
+            const option = options.find(o => o.text.trim() === wanted)
+                    || options.find(o => strip(o.text) === strip(wanted));
+            if (!option) return null;
+            select.value = option.value;
+            option.selected = true;
+            select.dispatchEvent(new Event('input', {bubbles: true}));
+            select.dispatchEvent(new Event('change', {bubbles: true}));
+            return option.text.trim();
+            """;
+
+    /**
+     * Returns load timings and network usage of the current page from the Navigation and Resource Timing
+     * APIs. Resources served from the browser cache count as zero bytes.
+     */
+    static final String PAGE_STATS = """
+            const nav = performance.getEntriesByType('navigation')[0];
+            const resources = performance.getEntriesByType('resource');
+            const bytes = resources.reduce((sum, r) => sum + (r.transferSize || 0), nav ? nav.transferSize || 0 : 0);
+            return {
+                loadMillis: nav ? Math.round(nav.loadEventEnd || nav.duration) : -1,
+                domReadyMillis: nav ? Math.round(nav.domContentLoadedEventEnd) : -1,
+                transferBytes: bytes,
+                requests: resources.length + 1
+            };
+            """;
+}
@@ -0,0 +1,108 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Cooperative cancellation of the run on the current thread, started by {@link RunCoordinator}.
+ * <p>
+ * A cancelled run stops at the next {@link #checkpoint()} (between stores, before the diff). Only a step run
+ * through {@link #interruptibly} (the scrape, which writes nothing) is also interrupted, so it doesn't have to
+ * wait for a page or the network to give up. Once a run is past the scrape, it always completes: an interrupt
+ * there would close the file channels of the state, journal, archive or outbox halfway through a write.
+ * <p>
+ * On a thread without a cancellable run ({@code --once}, the monitor config engine) both are no-ops.
+ */
+final class RunCancellation {
+
+    private static final ThreadLocal<RunCancellation> CURRENT = new ThreadLocal<>();
+
+    private final Thread thread = Thread.currentThread();
+    // guarded by this
+    private boolean requested;
+    private boolean interruptible;
+
+    private RunCancellation() {
+    }
+
+    /**
+     * Makes the calling thread's run cancellable until {@link #end()}.
+     */
+    static RunCancellation begin() {
+        RunCancellation cancellation = new RunCancellation();
+        CURRENT.set(cancellation);
+        return cancellation;
+    }
+
+    synchronized void end() {
+        CURRENT.remove();
+        if (requested) {
+            // an interrupt we sent must not reach whatever runs next on this thread
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Asks the run to stop, interrupting it when it is in an interruptible step.
+     */
+    synchronized void cancel() {
+        requested = true;
+        if (interruptible) {
+            thread.interrupt();
+        }
+    }
+
+    synchronized boolean requested() {
+        return requested;
+    }
+
+    /**
+     * @throws CancellationException when the run on this thread was cancelled
+     */
+    static void checkpoint() {
+        RunCancellation cancellation = CURRENT.get();
+        if (cancellation != null) {
+            cancellation.check();
+        }
+    }
+
+    /**
+     * Runs {@code step}, letting a cancel interrupt it.
+     *
+     * @throws CancellationException when the run was cancelled before or during the step
+     */
+    static <T> T interruptibly(Callable<T> step) throws Exception {
+        RunCancellation cancellation = CURRENT.get();
+        if (cancellation == null) {
+            return step.call();
+        }
+        cancellation.setInterruptible(true);
+        T result;
+        try {
+            result = step.call();
+        } catch (Exception e) {
+            cancellation.setInterruptible(false);
+            // whatever the interrupt broke, report the cancel
+            cancellation.check();
+            throw e;
+        }
+        cancellation.setInterruptible(false);
+        cancellation.check();
+        return result;
+    }
+
+    private synchronized void setInterruptible(boolean interruptible) {
+        if (interruptible) {
+            check();
+        } else if (requested) {
+            Thread.interrupted();
+        }
+        this.interruptible = interruptible;
+    }
+
+    private synchronized void check() {
+        if (requested) {
+            throw new CancellationException("Run cancelled");
+        }
+    }
+}
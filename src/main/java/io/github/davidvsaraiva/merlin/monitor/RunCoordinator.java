@@ -0,0 +1,183 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs of one target, scheduled and on demand, one at a time on the scheduler's thread.
+ * <p>
+ * An on-demand request joins the run in progress when that run covers its stores; otherwise it is merged into
+ * the single queued run, which starts once the current one is done. A burst of requests therefore costs at
+ * most one extra run. {@link #cancel()} stops the run in progress while it is still scraping, without saving
+ * (see {@link RunCancellation}); a run already past the scrape completes.
+ */
+public class RunCoordinator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RunCoordinator.class);
+
+    public static final String SCHEDULED = "Scheduled";
+    public static final String MANUAL = "Manual";
+
+    /**
+     * Does one run, as {@code Main.safeRun}: new workshops per checked store, empty when the run failed.
+     */
+    @FunctionalInterface
+    public interface Runner {
+        Map<String, Integer> run(List<String> stores, String trigger);
+    }
+
+    /**
+     * @param outcome {@code running}, {@code ok}, {@code failed} or {@code cancelled}
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Run(List<String> stores, String trigger, String startedAt, String finishedAt,
+                      Map<String, Integer> newWorkshops, String outcome) {
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Status(Run running, List<String> queued, Run last) {
+    }
+
+    private final Executor executor;
+    private final List<String> allStores;
+    private final Runner runner;
+
+    // guarded by this
+    private Queued queued;
+    private Current current;
+    private Run last;
+
+    private static final class Queued {
+        final Set<String> stores = new LinkedHashSet<>();
+        final CompletableFuture<Run> done = new CompletableFuture<>();
+    }
+
+    private static final class Current {
+        final List<String> stores;
+        final String trigger;
+        final String startedAt = Instant.now().toString();
+        final RunCancellation cancellation = RunCancellation.begin();
+        final CompletableFuture<Run> done;
+
+        Current(List<String> stores, String trigger, CompletableFuture<Run> done) {
+            this.stores = stores;
+            this.trigger = trigger;
+            this.done = done;
+        }
+    }
+
+    /**
+     * @param executor the scheduler's single thread, so on-demand and scheduled runs never overlap
+     */
+    public RunCoordinator(Executor executor, List<String> allStores, Runner runner) {
+        this.executor = executor;
+        this.allStores = List.copyOf(allStores);
+        this.runner = runner;
+    }
+
+    public List<String> stores() {
+        return allStores;
+    }
+
+    /**
+     * Asks for a run of {@code stores} (all stores when empty).
+     *
+     * @return completes when the run that covers the request has finished
+     */
+    public synchronized CompletableFuture<Run> trigger(List<String> stores) {
+        List<String> wanted = stores.isEmpty() ? allStores : stores;
+        if (current != null && MANUAL.equals(current.trigger) && current.stores.containsAll(wanted)) {
+            LOG.info("Run of {} requested; joining the one in progress", wanted);
+            return current.done;
+        }
+        if (queued != null) {
+            LOG.info("Run of {} requested; merged into the queued run", wanted);
+            queued.stores.addAll(wanted);
+            return queued.done;
+        }
+        LOG.info("Run of {} requested", wanted);
+        Queued next = new Queued();
+        next.stores.addAll(wanted);
+        queued = next;
+        try {
+            executor.execute(this::runQueued);
+        } catch (RejectedExecutionException e) {
+            queued = null;
+            next.done.completeExceptionally(new IllegalStateException("The monitor is shutting down", e));
+        }
+        return next.done;
+    }
+
+    /**
+     * Does a scheduled run now, on the calling (scheduler) thread.
+     */
+    public Map<String, Integer> runScheduled(List<String> stores) {
+        return execute(stores, SCHEDULED, new CompletableFuture<>()).newWorkshops();
+    }
+
+    private void runQueued() {
+        Queued next;
+        synchronized (this) {
+            next = queued;
+            queued = null;
+        }
+        // keep the configured store order whatever order the requests came in
+        List<String> stores = allStores.stream().filter(next.stores::contains).toList();
+        execute(stores, MANUAL, next.done);
+    }
+
+    private Run execute(List<String> stores, String trigger, CompletableFuture<Run> done) {
+        Current run = new Current(stores, trigger, done);
+        synchronized (this) {
+            current = run;
+        }
+        Map<String, Integer> found = Map.of();
+        Run finished;
+        try {
+            found = runner.run(stores, trigger);
+        } finally {
+            run.cancellation.end();
+            synchronized (this) {
+                // a cancel that came after the scrape doesn't stop the run
+                String outcome = !found.isEmpty() ? "ok" : run.cancellation.requested() ? "cancelled" : "failed";
+                finished = new Run(stores, trigger, run.startedAt, Instant.now().toString(), found, outcome);
+                last = finished;
+                current = null;
+            }
+            done.complete(finished);
+        }
+        return finished;
+    }
+
+    /**
+     * Asks the run in progress to stop.
+     *
+     * @return whether there was one
+     */
+    public synchronized boolean cancel() {
+        if (current == null) {
+            return false;
+        }
+        LOG.info("Cancelling the {} run of {}", current.trigger.toLowerCase(Locale.ROOT), current.stores);
+        current.cancellation.cancel();
+        return true;
+    }
+
+    public synchronized Status status() {
+        Run running = current == null ? null
+                : new Run(current.stores, current.trigger, current.startedAt, null, null, "running");
+        return new Status(running, queued == null ? null : new ArrayList<>(queued.stores), last);
+    }
+}
@@ -0,0 +1,225 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.slf4j.MDC;
+
+/**
+ * Timers for the phases of a run (browser creation, page load, store selection, ...) and counters per store,
+ * kept in memory for the Prometheus endpoint ({@link MetricsServer}) and emitted as JFR events.
+ * <p>
+ * Phases are timed with {@code try (var phase = RunMetrics.global().phase("page_load")) { ... }}. The run id and
+ * form are taken from the MDC of the calling thread, so everything a run does can be grouped in a recording.
+ */
+public class RunMetrics {
+
+    private static final RunMetrics GLOBAL = new RunMetrics();
+
+    private final Map<Key, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<Key, LongAdder> counters = new ConcurrentHashMap<>();
+
+    private record Key(String name, String form, String store) {
+    }
+
+    private static final class Timer {
+        final LongAdder count = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    }
+
+    public static RunMetrics global() {
+        return GLOBAL;
+    }
+
+    public Phase phase(String name) {
+        return phase(name, null);
+    }
+
+    /**
+     * Starts timing {@code name}; closing the returned phase records it.
+     *
+     * @param store the store the phase works on, or {@code null}; only tagged on the JFR event
+     */
+    public Phase phase(String name, String store) {
+        return new Phase(name, store);
+    }
+
+    /**
+     * Records a phase that was timed elsewhere, e.g. inside the page. It counts like a phase but, having no
+     * start and end on this side, is not emitted as a JFR event.
+     */
+    public void record(String name, Duration elapsed) {
+        addTiming(new Key(name, MDC.get("form"), null), elapsed.toNanos());
+    }
+
+    private void addTiming(Key key, long nanos) {
+        Timer timer = timers.computeIfAbsent(key, k -> new Timer());
+        timer.count.increment();
+        timer.nanos.add(nanos);
+        timer.maxNanos.accumulate(nanos);
+    }
+
+    /**
+     * Adds {@code n} to the counter {@code name} of {@code store} in the current form.
+     */
+    public void count(String name, String store, long n) {
+        counters.computeIfAbsent(new Key(name, MDC.get("form"), store), k -> new LongAdder()).add(n);
+    }
+
+    public long counter(String name, String store) {
+        long total = 0;
+        for (Map.Entry<Key, LongAdder> e : counters.entrySet()) {
+            if (e.getKey().name().equals(name) && (store == null || store.equals(e.getKey().store()))) {
+                total += e.getValue().sum();
+            }
+        }
+        return total;
+    }
+
+    public long timerCount(String phase) {
+        return timers.entrySet().stream()
+                .filter(e -> e.getKey().name().equals(phase))
+                .mapToLong(e -> e.getValue().count.sum())
+                .sum();
+    }
+
+    /**
+     * Everything recorded so far in the Prometheus text exposition format (version 0.0.4).
+     */
+    public String prometheus() {
+        StringBuilder out = new StringBuilder();
+        out.append("# HELP merlin_phase_seconds Time spent in each phase of a run.\n");
+        out.append("# TYPE merlin_phase_seconds summary\n");
+        Map<String, Timer> sortedTimers = new TreeMap<>();
+        timers.forEach((key, timer) -> sortedTimers.put(labels(key), timer));
+        sortedTimers.forEach((labels, timer) -> {
+            out.append("merlin_phase_seconds_count").append(labels).append(' ').append(timer.count.sum()).append('\n');
+            out.append("merlin_phase_seconds_sum").append(labels).append(' ').append(seconds(timer.nanos.sum())).append('\n');
+        });
+        out.append("# HELP merlin_phase_seconds_max Longest time spent in each phase of a run.\n");
+        out.append("# TYPE merlin_phase_seconds_max gauge\n");
+        sortedTimers.forEach((labels, timer) ->
+                out.append("merlin_phase_seconds_max").append(labels).append(' ').append(seconds(timer.maxNanos.get())).append('\n'));
+
+        Map<String, Map<String, Long>> byName = new TreeMap<>();
+        counters.forEach((key, value) -> byName.computeIfAbsent(key.name(), n -> new TreeMap<>())
+                .put(labels(new Key(null, key.form(), key.store())), value.sum()));
+        byName.forEach((name, series) -> {
+            out.append("# TYPE merlin_").append(name).append("_total counter\n");
+            series.forEach((labels, value) ->
+                    out.append("merlin_").append(name).append("_total").append(labels).append(' ').append(value).append('\n'));
+        });
+        return out.toString();
+    }
+
+    /**
+     * Counts the outcome of checking {@code store} and emits it as a JFR event
+     * ({@code jfr print --events merlin.StoreCheck}).
+     */
+    public void storeChecked(String store, int scraped, int newWorkshops, boolean failed) {
+        count("workshops_scraped", store, scraped);
+        count("workshops_new", store, newWorkshops);
+        count(failed ? "store_failures" : "store_checks", store, 1);
+        StoreCheckEvent event = new StoreCheckEvent();
+        if (event.isEnabled()) {
+            event.runId = MDC.get("runId");
+            event.form = MDC.get("form");
+            event.store = store;
+            event.scraped = scraped;
+            event.newWorkshops = newWorkshops;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+    private static String labels(Key key) {
+        StringBuilder labels = new StringBuilder();
+        appendLabel(labels, "phase", key.name());
+        appendLabel(labels, "form", key.form());
+        appendLabel(labels, "store", key.store());
+        return labels.length() == 0 ? "" : "{" + labels + "}";
+    }
+
+    private static void appendLabel(StringBuilder labels, String name, String value) {
+        if (value == null) {
+            return;
+        }
+        if (labels.length() > 0) {
+            labels.append(',');
+        }
+        String escaped = value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        labels.append(name).append("=\"").append(escaped).append('"');
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    /**
+     * A phase being timed.
+     */
+    public final class Phase implements AutoCloseable {
+        private final String name;
+        private final long start = System.nanoTime();
+        private final PhaseEvent event = new PhaseEvent();
+
+        private Phase(String name, String store) {
+            this.name = name;
+            event.phase = name;
+            event.store = store;
+            event.runId = MDC.get("runId");
+            event.form = MDC.get("form");
+            event.begin();
+        }
+
+        @Override
+        public void close() {
+            addTiming(new Key(name, event.form, null), System.nanoTime() - start);
+            event.commit();
+        }
+    }
+
+    @Name("merlin.Phase")
+    @Label("Run Phase")
+    @Category("Merlin Monitor")
+    @Description("One phase of a monitor run, such as page load or store selection")
+    static class PhaseEvent extends Event {
+        @Label("Run Id")
+        String runId;
+        @Label("Form")
+        String form;
+        @Label("Store")
+        String store;
+        @Label("Phase")
+        String phase;
+    }
+
+    @Name("merlin.StoreCheck")
+    @Label("Store Check")
+    @Category("Merlin Monitor")
+    @Description("Outcome of checking one store in a monitor run")
+    static class StoreCheckEvent extends Event {
+        @Label("Run Id")
+        String runId;
+        @Label("Form")
+        String form;
+        @Label("Store")
+        String store;
+        @Label("Workshops Scraped")
+        int scraped;
+        @Label("New Workshops")
+        int newWorkshops;
+        @Label("Failed")
+        boolean failed;
+    }
+}
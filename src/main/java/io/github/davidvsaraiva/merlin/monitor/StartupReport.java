@@ -0,0 +1,74 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Where the time goes between the process starting and the first page load, logged once per process.
+ * <p>
+ * {@link #mark} closes a phase at the point it is called; the first {@link #firstPageLoad()} closes the last one
+ * and logs them all, e.g. {@code Startup: 1480 ms until the first page load (jvm 410 ms, setup 620 ms, ...)}.
+ * The {@code jvm} phase runs from the JVM start to {@code main}, so it includes loading and initialising
+ * {@link Main}.
+ */
+final class StartupReport {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StartupReport.class);
+
+    private static final List<String> PHASES = new ArrayList<>();
+    private static final List<Long> ENDS = new ArrayList<>();
+    private static boolean started;
+    private static long start;
+    private static long last;
+    private static boolean reported;
+
+    private StartupReport() {
+    }
+
+    /**
+     * Called first thing in {@code main}: the time since the process started is the {@code jvm} phase.
+     */
+    static synchronized void mainStarted() {
+        // the process start time from /proc is only good to a second, the JVM's own uptime to the millisecond
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        start = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(uptime);
+        last = start;
+        started = true;
+        mark("jvm");
+    }
+
+    static synchronized void mark(String phase) {
+        if (reported || !started) {
+            return;
+        }
+        PHASES.add(phase);
+        ENDS.add(System.nanoTime());
+    }
+
+    /**
+     * Logs the report when called for the first time.
+     */
+    static synchronized void firstPageLoad() {
+        if (reported || !started) {
+            return;
+        }
+        long now = System.nanoTime();
+        reported = true;
+        StringBuilder phases = new StringBuilder();
+        for (int i = 0; i < PHASES.size(); i++) {
+            phases.append(i == 0 ? "" : ", ").append(PHASES.get(i)).append(' ').append(millis(ENDS.get(i) - last)).append(" ms");
+            last = ENDS.get(i);
+        }
+        phases.append(PHASES.isEmpty() ? "" : ", ").append("until page load ").append(millis(now - last)).append(" ms");
+        LOG.info("Startup: {} ms until the first page load ({})", millis(now - start), phases);
+    }
+
+    private static long millis(long nanos) {
+        return Math.max(0, nanos / 1_000_000);
+    }
+}
@@ -0,0 +1,95 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+
+/**
+ * On-disk formats of the workshop state snapshot.
+ * <p>
+ * {@link #SMILE} is Jackson's binary JSON: the same document model, but store names, titles used as keys and
+ * repeated timestamps are written once and referenced afterwards, and an entry's title is left out since it is
+ * already the entry's key (it is restored from the key on load). The format of an existing file is detected
+ * from its first bytes, so switching {@code STATE_FORMAT} converts the file on the next save.
+ */
+public enum StateCodec {
+
+    JSON(() -> new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)) {
+        @Override
+        boolean recognises(byte[] header) {
+            return true;
+        }
+    },
+
+    SMILE(() -> new SmileMapper(SmileFactory.builder()
+            .enable(SmileGenerator.Feature.CHECK_SHARED_NAMES)
+            .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+            .build())
+            .addMixIn(WorkshopEntry.class, WithoutTitle.class)) {
+
+        private final byte[] magic = {':', ')', '\n'};
+
+        @Override
+        boolean recognises(byte[] header) {
+            return header.length >= magic.length && Arrays.equals(header, 0, magic.length, magic, 0, magic.length);
+        }
+    };
+
+    @JsonIgnoreProperties("title")
+    private abstract static class WithoutTitle {
+    }
+
+    // built on first use: a JSON run never pays for the Smile mapper, nor a --help run for either
+    private final Supplier<ObjectMapper> factory;
+    private volatile ObjectMapper mapper;
+
+    StateCodec(Supplier<ObjectMapper> factory) {
+        this.factory = factory;
+    }
+
+    ObjectMapper mapper() {
+        ObjectMapper m = mapper;
+        if (m == null) {
+            synchronized (this) {
+                m = mapper;
+                if (m == null) {
+                    m = factory.get();
+                    mapper = m;
+                }
+            }
+        }
+        return m;
+    }
+
+    abstract boolean recognises(byte[] header);
+
+    byte[] encode(WorkshopState state) throws IOException {
+        return mapper().writeValueAsBytes(state);
+    }
+
+    public static StateCodec fromName(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * The codec {@code file} was written with. Binary formats are checked first since JSON has no magic bytes.
+     */
+    static StateCodec detect(Path file) throws IOException {
+        byte[] header;
+        try (InputStream in = Files.newInputStream(file)) {
+            header = in.readNBytes(4);
+        }
+        return SMILE.recognises(header) ? SMILE : JSON;
+    }
+}
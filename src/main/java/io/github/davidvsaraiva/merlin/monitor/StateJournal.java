@@ -0,0 +1,185 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only log of the changes made to the workshop state since the last snapshot, one compact JSON
+ * record per line. Replaying is idempotent (a title already present keeps its first {@code firstSeen}, a
+ * changed or archived entry is replaced or removed as a whole), so a crash between writing a snapshot and
+ * trimming the journal is harmless.
+ */
+class StateJournal {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StateJournal.class);
+
+    static final String ADD = "add";
+    static final String CHECKED = "checked";
+    static final String UPDATED = "updated";
+    static final String FINGERPRINT = "fingerprint";
+    static final String ENTRY = "entry";
+    static final String ARCHIVED = "archived";
+
+    private final Path file;
+    private final ObjectMapper mapper;
+    private int records = -1;
+
+    StateJournal(Path file, ObjectMapper mapper) {
+        this.file = file;
+        this.mapper = mapper;
+    }
+
+    Path file() {
+        return file;
+    }
+
+    long sizeBytes() throws IOException {
+        return Files.exists(file) ? Files.size(file) : 0;
+    }
+
+    int records() throws IOException {
+        if (records < 0) {
+            records = 0;
+            if (Files.exists(file)) {
+                try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    while (reader.readLine() != null) {
+                        records++;
+                    }
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Appends the records and forces them to disk before returning.
+     */
+    void append(List<Record> toAppend) throws IOException {
+        if (toAppend.isEmpty()) {
+            return;
+        }
+        StringBuilder lines = new StringBuilder();
+        for (Record r : toAppend) {
+            lines.append(mapper.writeValueAsString(r)).append('\n');
+        }
+        int known = records();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            if (endsWithTornLine(channel)) {
+                // keep the next record readable after a previous append was cut short
+                lines.insert(0, '\n');
+            }
+            channel.position(channel.size());
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        records = known + toAppend.size();
+    }
+
+    private static boolean endsWithTornLine(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            return false;
+        }
+        ByteBuffer last = ByteBuffer.allocate(1);
+        channel.read(last, size - 1);
+        return last.get(0) != '\n';
+    }
+
+    /**
+     * Applies every journal record on top of {@code state}. A torn last line (power cut mid append) is skipped.
+     */
+    WorkshopState replay(WorkshopState state) throws IOException {
+        if (!Files.exists(file)) {
+            return state;
+        }
+        Map<String, WorkshopsRepository.StoreData> stores = state.stores();
+        String lastUpdated = state.lastUpdated();
+        int applied = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                Record r;
+                try {
+                    r = mapper.readValue(line, Record.class);
+                } catch (IOException e) {
+                    LOG.warn("Skipping unreadable journal record in {}", file);
+                    continue;
+                }
+                applied++;
+                switch (r.op()) {
+                    case ADD -> bucket(stores, r.store()).getWorkshops()
+                            .putIfAbsent(r.title(), new WorkshopEntry(r.title(), r.at()));
+                    case CHECKED -> bucket(stores, r.store()).setLastChecked(r.at());
+                    case UPDATED -> lastUpdated = r.at();
+                    case FINGERPRINT -> bucket(stores, r.store()).setFingerprint(r.fingerprint(), r.version());
+                    case ENTRY -> bucket(stores, r.store()).getWorkshops().put(r.title(), r.entry());
+                    case ARCHIVED -> bucket(stores, r.store()).getWorkshops().remove(r.title());
+                    default -> LOG.warn("Unknown journal record type {}", r.op());
+                }
+            }
+        }
+        records = applied;
+        LOG.debug("Replayed {} journal records from {}", applied, file);
+        return new WorkshopState(stores, lastUpdated);
+    }
+
+    /**
+     * Drops the first {@code bytes} of the journal (already folded into a snapshot), keeping whatever was
+     * appended after them.
+     */
+    void dropPrefix(long bytes) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        byte[] all = Files.readAllBytes(file);
+        byte[] rest = Arrays.copyOfRange(all, (int) Math.min(bytes, all.length), all.length);
+        WorkshopsRepository.writeAtomically(file, rest);
+        records = -1;
+    }
+
+    private static WorkshopsRepository.StoreData bucket(Map<String, WorkshopsRepository.StoreData> stores, String store) {
+        return stores.computeIfAbsent(store, s -> new WorkshopsRepository.StoreData(new LinkedHashMap<>(), null));
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record Record(String op, String store, String title, String at, String fingerprint, Long version,
+                  WorkshopEntry entry) {
+
+        Record(String op, String store, String title, String at) {
+            this(op, store, title, at, null, null, null);
+        }
+
+        static Record fingerprint(String store, String fingerprint, long version) {
+            return new Record(FINGERPRINT, store, null, null, fingerprint, version, null);
+        }
+
+        /**
+         * Replaces an entry whose fields changed, e.g. when it is no longer listed.
+         */
+        static Record entry(String store, WorkshopEntry entry) {
+            return new Record(ENTRY, store, entry.title(), null, null, null, entry);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import static io.github.davidvsaraiva.merlin.monitor.Config.getEnvOrDefault;
+
+/**
+ * Scrapes the monitored stores either from a single page load (one browser, stores read in turn) or in
+ * parallel, one store per browser slot, each store bounded by its own timeout.
+ * <p>
+ * A store that fails or times out is left out of the result; the other stores are still returned. When the
+ * calling thread is interrupted (a cancelled run), the workers still scraping are interrupted as well.
+ */
+public class StoreScraper implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StoreScraper.class);
+
+    private final WorkshopSource source;
+    private final int parallelism;
+    private final Duration storeTimeout;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService watchdog;
+
+    /**
+     * @param parallelism number of stores scraped at the same time; {@code 1} reads every store from a
+     *                    single page load instead
+     */
+    public StoreScraper(WorkshopSource source, int parallelism, Duration storeTimeout) {
+        this.source = source;
+        this.parallelism = parallelism;
+        this.storeTimeout = storeTimeout;
+        if (parallelism > 1) {
+            this.workers = Executors.newFixedThreadPool(parallelism, daemonThreads("store-scraper"));
+            this.watchdog = Executors.newSingleThreadScheduledExecutor(daemonThreads("store-scraper-watchdog"));
+        } else {
+            this.workers = null;
+            this.watchdog = null;
+        }
+    }
+
+    /**
+     * Parallel mode is enabled with {@code SCRAPE_MODE=parallel} and uses one slot per pooled browser.
+     */
+    public static StoreScraper fromEnv(WorkshopSource source, int browserSlots) {
+        boolean parallel = "parallel".equalsIgnoreCase(getEnvOrDefault("SCRAPE_MODE", "single-page"));
+        Duration timeout = Duration.ofSeconds(Long.parseLong(getEnvOrDefault("STORE_TIMEOUT_SECONDS", "180")));
+        return new StoreScraper(source, parallel ? browserSlots : 1, timeout);
+    }
+
+    /**
+     * @return the workshops of every store that was scraped successfully, in the order of {@code stores}
+     */
+    public Map<String, List<String>> scrape(List<String> stores) {
+        if (workers == null) {
+            return source.fetchWorkshopsForStores(stores);
+        }
+        LOG.info("Scraping {} stores on {} browser slots", stores.size(), parallelism);
+        Map<String, Task> pending = new LinkedHashMap<>();
+        for (String store : stores) {
+            pending.put(store, submit(store));
+        }
+        Map<String, List<String>> scraped = new LinkedHashMap<>();
+        for (Map.Entry<String, Task> e : pending.entrySet()) {
+            try {
+                scraped.put(e.getKey(), e.getValue().result().get());
+            } catch (ExecutionException ex) {
+                LOG.error("Failed to scrape store {}", e.getKey(), ex.getCause());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                // the workers hold browser leases: stop them too, not just the wait for their results
+                pending.values().forEach(Task::cancel);
+                throw new IllegalStateException("Interrupted while scraping stores", ex);
+            }
+        }
+        return scraped;
+    }
+
+    /**
+     * A store handed to the workers: its result, and the worker running it.
+     */
+    private record Task(CompletableFuture<List<String>> result, Future<?> worker) {
+
+        void cancel() {
+            result.cancel(false);
+            worker.cancel(true);
+        }
+    }
+
+    private Task submit(String store) {
+        CompletableFuture<List<String>> result = new CompletableFuture<>();
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        Future<?> worker = workers.submit(() -> {
+            Thread thread = Thread.currentThread();
+            // clear any interrupt left over from a previous store that timed out on this thread
+            Thread.interrupted();
+            if (context != null) {
+                MDC.setContextMap(context);
+            }
+            MDC.put("store", "[" + store + "]");
+            // the clock starts when the store gets a slot, not when it was queued
+            ScheduledFuture<?> deadline = watchdog.schedule(() -> {
+                if (result.completeExceptionally(
+                        new TimeoutException("Store " + store + " timed out after " + storeTimeout))) {
+                    thread.interrupt();
+                }
+            }, storeTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            try {
+                LOG.info("Fetching workshops for store -> {}", store);
+                result.complete(source.fetchWorkshopsForStore(store));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            } finally {
+                deadline.cancel(false);
+                MDC.clear();
+            }
+        });
+        return new Task(result, worker);
+    }
+
+    @Override
+    public void close() {
+        if (workers != null) {
+            workers.shutdownNow();
+            watchdog.shutdownNow();
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,268 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.openqa.selenium.WebDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static io.github.davidvsaraiva.merlin.monitor.Config.getEnvOrDefault;
+
+/**
+ * Bounded pool of WebDriver sessions so a browser is started once and reused across stores and runs.
+ * <p>
+ * Idle sessions are health checked before being handed out, evicted after {@code maxIdle} and recycled
+ * after {@code maxUses} leases, or once they use more than {@code BROWSER_MEMORY_LIMIT_MB}, so a long-lived
+ * browser does not keep growing.
+ */
+public class WebDriverPool implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WebDriverPool.class);
+
+    private final Supplier<WebDriver> factory;
+    private final int maxSize;
+    private final Duration maxIdle;
+    private final int maxUses;
+
+    private final Semaphore permits;
+    private final Deque<PooledDriver> idle = new ArrayDeque<>();
+    private final ScheduledExecutorService reaper;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong recycles = new AtomicLong();
+    private final AtomicLong creationNanos = new AtomicLong();
+
+    private volatile boolean closed;
+
+    public WebDriverPool(Supplier<WebDriver> factory, int maxSize, Duration maxIdle, int maxUses) {
+        if (maxSize < 1 || maxUses < 1) {
+            throw new IllegalArgumentException("maxSize and maxUses must be at least 1");
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.maxIdle = maxIdle;
+        this.maxUses = maxUses;
+        this.permits = new Semaphore(maxSize, true);
+        this.reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "webdriver-pool-reaper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, Math.min(maxIdle.toSeconds(), 60));
+        reaper.scheduleWithFixedDelay(this::evictExpired, period, period, TimeUnit.SECONDS);
+    }
+
+    public static WebDriverPool fromEnv(Supplier<WebDriver> factory) {
+        return fromEnv(factory, Integer.parseInt(getEnvOrDefault("WEBDRIVER_POOL_SIZE", "1")));
+    }
+
+    /**
+     * A pool of {@code size} sessions, e.g. the global browser limit of a monitor config file.
+     */
+    public static WebDriverPool fromEnv(Supplier<WebDriver> factory, int size) {
+        long maxIdleMinutes = Long.parseLong(getEnvOrDefault("WEBDRIVER_POOL_MAX_IDLE_MINUTES", "420"));
+        int maxUses = Integer.parseInt(getEnvOrDefault("WEBDRIVER_POOL_MAX_USES", "50"));
+        return new WebDriverPool(factory, size, Duration.ofMinutes(maxIdleMinutes), maxUses);
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Borrows a session, blocking while all {@code maxSize} sessions are leased.
+     * The returned lease must be closed to give the session back.
+     */
+    public Lease acquire() throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("WebDriver pool is closed");
+        }
+        permits.acquire();
+        try {
+            PooledDriver pooled;
+            while ((pooled = pollIdle()) != null) {
+                if (isHealthy(pooled.driver)) {
+                    hits.incrementAndGet();
+                    pooled.uses++;
+                    LOG.debug("Reusing WebDriver session (use {} of {})", pooled.uses, maxUses);
+                    return new Lease(pooled);
+                }
+                LOG.debug("Discarding unhealthy WebDriver session");
+                quietQuit(pooled.driver);
+            }
+            misses.incrementAndGet();
+            long start = System.nanoTime();
+            WebDriver driver;
+            try (var phase = RunMetrics.global().phase("driver_create")) {
+                driver = factory.get();
+            }
+            StartupReport.mark("driver_create");
+            long elapsed = System.nanoTime() - start;
+            creationNanos.addAndGet(elapsed);
+            LOG.debug("Created WebDriver session in {} ms", TimeUnit.NANOSECONDS.toMillis(elapsed));
+            pooled = new PooledDriver(driver);
+            pooled.uses++;
+            return new Lease(pooled);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private synchronized PooledDriver pollIdle() {
+        return idle.pollFirst();
+    }
+
+    private void release(PooledDriver pooled, boolean discard) {
+        try {
+            if (closed || discard) {
+                quietQuit(pooled.driver);
+            } else if (pooled.uses >= maxUses) {
+                LOG.debug("Recycling WebDriver session after {} uses", pooled.uses);
+                recycles.incrementAndGet();
+                quietQuit(pooled.driver);
+            } else if (BrowserSupervisor.overMemoryLimit(pooled.driver)) {
+                recycles.incrementAndGet();
+                quietQuit(pooled.driver);
+            } else {
+                pooled.lastReturned = System.nanoTime();
+                boolean pooledNow;
+                synchronized (this) {
+                    // close() may have drained the idle sessions since the check above
+                    pooledNow = !closed;
+                    if (pooledNow) {
+                        idle.addFirst(pooled);
+                    }
+                }
+                if (!pooledNow) {
+                    quietQuit(pooled.driver);
+                }
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Quits every idle session that has not been used for longer than {@code maxIdle}.
+     */
+    public void evictExpired() {
+        long now = System.nanoTime();
+        List<PooledDriver> expired = new ArrayList<>();
+        synchronized (this) {
+            Iterator<PooledDriver> it = idle.iterator();
+            while (it.hasNext()) {
+                PooledDriver pooled = it.next();
+                if (now - pooled.lastReturned >= maxIdle.toNanos()) {
+                    it.remove();
+                    expired.add(pooled);
+                }
+            }
+        }
+        for (PooledDriver pooled : expired) {
+            LOG.debug("Evicting WebDriver session idle for more than {}", maxIdle);
+            evictions.incrementAndGet();
+            quietQuit(pooled.driver);
+        }
+    }
+
+    public Stats stats() {
+        int idleCount;
+        synchronized (this) {
+            idleCount = idle.size();
+        }
+        return new Stats(hits.get(), misses.get(), evictions.get(), recycles.get(),
+                TimeUnit.NANOSECONDS.toMillis(creationNanos.get()), idleCount,
+                maxSize - permits.availablePermits());
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        reaper.shutdownNow();
+        List<PooledDriver> toQuit;
+        synchronized (this) {
+            toQuit = new ArrayList<>(idle);
+            idle.clear();
+        }
+        LOG.info("Closing WebDriver pool ({} idle sessions). {}", toQuit.size(), stats());
+        toQuit.forEach(p -> quietQuit(p.driver));
+    }
+
+    private static boolean isHealthy(WebDriver driver) {
+        try {
+            driver.getWindowHandle();
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static void quietQuit(WebDriver driver) {
+        try {
+            driver.quit();
+        } catch (RuntimeException e) {
+            LOG.debug("Ignoring failure while quitting WebDriver", e);
+        }
+    }
+
+    private static final class PooledDriver {
+        private final WebDriver driver;
+        private int uses;
+        private long lastReturned;
+
+        private PooledDriver(WebDriver driver) {
+            this.driver = driver;
+        }
+    }
+
+    /**
+     * A borrowed session. Call {@link #invalidate()} when the browser is in an unknown state so it is
+     * quit instead of being returned to the pool.
+     */
+    public final class Lease implements AutoCloseable {
+        private final PooledDriver pooled;
+        private boolean invalid;
+        private boolean released;
+
+        private Lease(PooledDriver pooled) {
+            this.pooled = pooled;
+        }
+
+        public WebDriver driver() {
+            return pooled.driver;
+        }
+
+        public void invalidate() {
+            invalid = true;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(pooled, invalid);
+            }
+        }
+    }
+
+    public record Stats(long hits, long misses, long evictions, long recycles, long creationMillis,
+                        int idle, int leased) {
+    }
+}
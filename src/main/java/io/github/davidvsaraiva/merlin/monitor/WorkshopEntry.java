@@ -1,10 +1,65 @@
 package io.github.davidvsaraiva.merlin.monitor;
 
 import java.time.Instant;
+import java.util.function.UnaryOperator;
 
-public record WorkshopEntry(String title, String firstSeen) {
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A workshop as listed by a store.
+ * <p>
+ * {@code name}, {@code date} (ISO, e.g. {@code 2025-09-27}) and {@code time} ({@code 10:00}) are parsed from the
+ * title when it is first seen (see {@link WorkshopTitle}). {@code removedAt} is the first check that no longer
+ * listed it (usually sold out) and {@code lastSeen} the last check that did; both are {@code null} while it is
+ * listed, when it was last seen at the store's {@code lastChecked}.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record WorkshopEntry(String title, String firstSeen, String name, String date, String time,
+                            String lastSeen, String removedAt) {
 
     public WorkshopEntry(String title) {
         this(title, Instant.now().toString());
     }
-}
\ No newline at end of file
+
+    public WorkshopEntry(String title, String firstSeen) {
+        this(title, firstSeen, WorkshopTitle.parse(title, firstSeen));
+    }
+
+    private WorkshopEntry(String title, String firstSeen, WorkshopTitle parsed) {
+        this(title, firstSeen, parsed.name(),
+                parsed.date() == null ? null : parsed.date().toString(),
+                parsed.time() == null ? null : parsed.time().toString(),
+                null, null);
+    }
+
+    public boolean listed() {
+        return removedAt == null;
+    }
+
+    /**
+     * This entry as no longer listed since {@code removedAt}, having been last seen at {@code lastSeen}.
+     */
+    WorkshopEntry removed(String lastSeen, String removedAt) {
+        return new WorkshopEntry(title, firstSeen, name, date, time, lastSeen, removedAt);
+    }
+
+    /**
+     * This entry listed again (seats freed up after it sold out).
+     */
+    WorkshopEntry relisted() {
+        return new WorkshopEntry(title, firstSeen, name, date, time, null, null);
+    }
+
+    /**
+     * The same entry with the given title and its timestamps passed through {@code timestamps}, with the
+     * structured fields filled in when the stored entry predates them.
+     */
+    WorkshopEntry intern(String title, UnaryOperator<String> timestamps) {
+        String seen = firstSeen == null ? null : timestamps.apply(firstSeen);
+        WorkshopEntry entry = name == null && title != null
+                ? new WorkshopEntry(title, seen)
+                : new WorkshopEntry(title, seen, name, date, time, null, null);
+        return removedAt == null ? entry
+                : entry.removed(lastSeen == null ? null : timestamps.apply(lastSeen), timestamps.apply(removedAt));
+    }
+}
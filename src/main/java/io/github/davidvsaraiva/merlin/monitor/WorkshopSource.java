@@ -0,0 +1,19 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Something that can read the workshops currently offered by each store.
+ */
+public interface WorkshopSource {
+
+    List<String> fetchWorkshopsForStore(String storeName);
+
+    /**
+     * @return workshops per store, in the iteration order of {@code storeNames}; a store that could not be read
+     *         is left out
+     */
+    Map<String, List<String>> fetchWorkshopsForStores(Collection<String> storeNames);
+}
@@ -0,0 +1,89 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.text.Normalizer;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A workshop title split into its parts, e.g. {@code Como aplicar papel de parede. Dia 27/09, 10h.} into the
+ * name {@code Como aplicar papel de parede}, the date {@code 27/09} and the time {@code 10:00}.
+ * <p>
+ * Titles carry no year: the date is taken as the first one on or after a few months before the reference day
+ * (when the title was first seen), so a January workshop listed in December lands in the next year. Titles
+ * that don't follow the pattern keep the whole title as name and no date or time.
+ *
+ * @param date {@code null} when the title has no date
+ * @param time {@code null} when the title has no time
+ */
+record WorkshopTitle(String name, LocalDate date, LocalTime time) {
+
+    private static final Pattern DATED = Pattern.compile(
+            "^(.*?)[\\s.,;:-]*\\bDia\\s+(\\d{1,2})/(\\d{1,2})(?:/(\\d{2,4}))?(?:\\s*[,.]?\\s*(?:às\\s+)?(\\d{1,2})\\s*h\\s*(\\d{2})?)?.*$",
+            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    private static final Pattern MARKS = Pattern.compile("\\p{M}");
+    private static final Pattern NOT_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern TRAILING = Pattern.compile("[\\s.,;:-]+$");
+
+    // how far back a listed date may be before it is taken to be next year's
+    private static final int MONTHS_BACK = 6;
+
+    static WorkshopTitle parse(String title, LocalDate reference) {
+        String trimmed = title.trim();
+        Matcher m = DATED.matcher(trimmed);
+        if (!m.matches()) {
+            return new WorkshopTitle(stripEnd(trimmed), null, null);
+        }
+        try {
+            int day = Integer.parseInt(m.group(2));
+            int month = Integer.parseInt(m.group(3));
+            LocalDate date;
+            if (m.group(4) != null) {
+                int year = Integer.parseInt(m.group(4));
+                date = LocalDate.of(year < 100 ? 2000 + year : year, month, day);
+            } else {
+                date = LocalDate.of(reference.getYear(), month, day);
+                if (date.isBefore(reference.minusMonths(MONTHS_BACK))) {
+                    date = date.plusYears(1);
+                }
+            }
+            LocalTime time = m.group(5) == null ? null
+                    : LocalTime.of(Integer.parseInt(m.group(5)), m.group(6) == null ? 0 : Integer.parseInt(m.group(6)));
+            String name = stripEnd(m.group(1));
+            return new WorkshopTitle(name.isEmpty() ? stripEnd(trimmed) : name, date, time);
+        } catch (DateTimeException e) {
+            return new WorkshopTitle(stripEnd(trimmed), null, null);
+        }
+    }
+
+    /**
+     * Parses a title first seen at the ISO instant {@code firstSeen} (today when it isn't one).
+     */
+    static WorkshopTitle parse(String title, String firstSeen) {
+        LocalDate reference;
+        try {
+            reference = LocalDate.ofInstant(Instant.parse(firstSeen), ZoneOffset.UTC);
+        } catch (RuntimeException e) {
+            reference = LocalDate.now(ZoneOffset.UTC);
+        }
+        return parse(title, reference);
+    }
+
+    /**
+     * What two spellings of the same workshop have in common: no accents, case, whitespace or punctuation
+     * differences.
+     */
+    static String key(String title) {
+        String plain = MARKS.matcher(Normalizer.normalize(title, Normalizer.Form.NFD)).replaceAll("");
+        return NOT_WORD.matcher(plain.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    private static String stripEnd(String s) {
+        return TRAILING.matcher(s).replaceAll("");
+    }
+}
@@ -1,45 +1,531 @@
 package io.github.davidvsaraiva.merlin.monitor;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
-public class WorkshopsRepository {
+import static io.github.davidvsaraiva.merlin.monitor.Config.getEnvOrDefault;
+
+/**
+ * Persists the workshop state as a snapshot, written atomically (temp file, fsync, rename), in the configured
+ * {@link StateCodec} (pretty JSON by default). Snapshots in any supported format are read back.
+ * <p>
+ * In journal mode ({@code STATE_STORAGE=journal}) a save only appends what changed since the previous
+ * load/save to {@code <file>.journal}; the journal is folded back into the snapshot in the background once it
+ * grows past a size or record threshold. Loading reads the snapshot and replays the journal. In file mode every
+ * save rewrites the snapshot, so the file stays self-contained for whatever syncs it.
+ * <p>
+ * The loaded state is kept in memory and handed out again as long as the files on disk keep the same size
+ * and modification time. Cold loads stream the snapshot instead of reading it into a String first, and
+ * {@link #loadStore(String)} skips over every store but the requested one.
+ * <p>
+ * Every write happens under {@link #lock()}, a lock on {@code <file>.lock} shared with other processes using
+ * the same file, so a {@code --once} run and a running monitor never write at the same time.
+ */
+public class WorkshopsRepository implements AutoCloseable {
 
     private static final Logger LOG = LoggerFactory.getLogger(WorkshopsRepository.class);
 
+    private static final String DEFAULT_COMPACT_BYTES = "262144";
+    private static final String DEFAULT_COMPACT_RECORDS = "2000";
 
     private final Path path;
-    private final ObjectMapper mapper;
+    private final StateCodec codec;
+    private final boolean journaled;
+    private final StateJournal journal;
+    private final long compactBytes;
+    private final int compactRecords;
+    private final ExecutorService compactor;
+
+    // what the files on disk already contain, to work out what a save has to append
+    private final Map<String, Map<String, WorkshopEntry>> persistedEntries = new HashMap<>();
+    private final Map<String, String> persistedLastChecked = new HashMap<>();
+    private final Map<String, String> persistedFingerprints = new HashMap<>();
+    private String persistedLastUpdated;
+    private boolean compactionPending;
+
+    // state as it is on disk, valid while the files still match the stamp taken when it was read/written
+    private WorkshopState cached;
+    private FileStamp cachedStamp;
+    private FirstSeenIndex index = new FirstSeenIndex();
+
+    // always taken before the monitor of this object, never while holding it
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private FileChannel lockChannel;
 
     public WorkshopsRepository(Path path) {
+        this(path, false, Long.parseLong(DEFAULT_COMPACT_BYTES), Integer.parseInt(DEFAULT_COMPACT_RECORDS));
+    }
+
+    public WorkshopsRepository(Path path, boolean journaled, long compactBytes, int compactRecords) {
+        this(path, journaled, compactBytes, compactRecords, StateCodec.JSON);
+    }
+
+    public WorkshopsRepository(Path path, boolean journaled, long compactBytes, int compactRecords, StateCodec codec) {
         this.path = path;
-        this.mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        this.codec = codec;
+        this.journaled = journaled;
+        this.journal = new StateJournal(path.resolveSibling(path.getFileName() + ".journal"), new ObjectMapper());
+        this.compactBytes = compactBytes;
+        this.compactRecords = compactRecords;
+        this.compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "state-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static WorkshopsRepository fromEnv(Path path) {
+        boolean journaled = "journal".equalsIgnoreCase(getEnvOrDefault("STATE_STORAGE", "file"));
+        long compactBytes = Long.parseLong(getEnvOrDefault("JOURNAL_COMPACT_BYTES", DEFAULT_COMPACT_BYTES));
+        int compactRecords = Integer.parseInt(getEnvOrDefault("JOURNAL_COMPACT_RECORDS", DEFAULT_COMPACT_RECORDS));
+        StateCodec codec = StateCodec.fromName(getEnvOrDefault("STATE_FORMAT", "json"));
+        return new WorkshopsRepository(path, journaled, compactBytes, compactRecords, codec);
     }
 
-    public WorkshopState loadOrCreate() throws IOException {
+    public synchronized WorkshopState loadOrCreate() throws IOException {
         LOG.debug("WorkshopsRepository.loadOrCreate() called");
+        FileStamp stamp = stamp();
+        if (cached != null && stamp.equals(cachedStamp)) {
+            LOG.debug("State file unchanged since last load/save, using the in-memory copy");
+            return cached;
+        }
+        WorkshopState state;
         if (!Files.exists(path)) {
             LOG.debug("File {} does not exist. Creating empty workshop list object", path);
-            return new WorkshopState(new HashMap<>(), null);
+            state = new WorkshopState(new LinkedHashMap<>(), null);
+        } else {
+            state = read(path, null);
         }
-        return mapper.readValue(Files.readString(path), WorkshopState.class);
+        state = journal.replay(state);
+        remember(state);
+        cached = state;
+        cachedStamp = stamp;
+        index = FirstSeenIndex.of(state);
+        return state;
+    }
+
+    /**
+     * Index over the {@code firstSeen} times of the last loaded state, rebuilt on every read from disk. Callers
+     * adding workshops to the loaded state add them here as well.
+     */
+    public synchronized FirstSeenIndex firstSeenIndex() {
+        return index;
+    }
+
+    /**
+     * Drops the in-memory state, so the next {@link #loadOrCreate()} reads the files again. The state it hands out
+     * is the cached one, so a run that changed it and then failed before saving must call this.
+     */
+    public synchronized void invalidate() {
+        cached = null;
+        cachedStamp = null;
+    }
+
+    /**
+     * Loads a single store without materialising the others.
+     *
+     * @return the store's data, or {@code null} when the state has no such store
+     */
+    public synchronized StoreData loadStore(String store) throws IOException {
+        if (cached != null && stamp().equals(cachedStamp)) {
+            return cached.stores().get(store);
+        }
+        WorkshopState state = Files.exists(path) ? read(path, store) : new WorkshopState(new LinkedHashMap<>(), null);
+        state = journal.replay(state);
+        return state.stores().get(store);
     }
 
     public void save (WorkshopState state) throws IOException {
-        mapper.writerWithDefaultPrettyPrinter().writeValue(path.toFile(), state);
+        try (WriteLock lock = lock()) {
+            synchronized (this) {
+                try {
+                    persist(state);
+                    cached = state;
+                    cachedStamp = stamp();
+                } catch (IOException | RuntimeException e) {
+                    // the in-memory state now differs from the files; read them again next time
+                    invalidate();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes the write lock, waiting for another process (or thread) holding it. Held around a whole run, it
+     * keeps a run of another process from saving between this run's load and save; saves inside it take it
+     * again without waiting.
+     */
+    public WriteLock lock() throws IOException {
+        if (!writeLock.tryLock()) {
+            LOG.info("Waiting for the run in progress to finish writing {}", path);
+            writeLock.lock();
+        }
+        if (writeLock.getHoldCount() == 1) {
+            try {
+                FileChannel channel = FileChannel.open(path.resolveSibling(path.getFileName() + ".lock"),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                try {
+                    if (channel.tryLock() == null) {
+                        LOG.info("Waiting for another process writing {}", path);
+                        channel.lock();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    channel.close();
+                    throw e;
+                }
+                lockChannel = channel;
+            } catch (IOException | RuntimeException e) {
+                writeLock.unlock();
+                throw e;
+            }
+        }
+        return this::unlock;
+    }
+
+    private void unlock() {
+        if (writeLock.getHoldCount() == 1 && lockChannel != null) {
+            try {
+                // releases the file lock
+                lockChannel.close();
+            } catch (IOException e) {
+                LOG.warn("Could not release the lock on {}", path, e);
+            }
+            lockChannel = null;
+        }
+        writeLock.unlock();
+    }
+
+    /**
+     * Held {@link #lock()}; closing releases it.
+     */
+    public interface WriteLock extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * Appends entries taken out of the live state ({@link StoreData#removePast}) to {@code <file>.archive}, one
+     * JSON line each, and drops them from the {@link #firstSeenIndex()}. Call it before saving the state without
+     * them: if that save fails, the next run archives them again, so the archive may hold the same line twice.
+     */
+    public void archive(String store, List<WorkshopEntry> entries) throws IOException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        ObjectMapper mapper = new ObjectMapper();
+        StringBuilder lines = new StringBuilder();
+        for (WorkshopEntry entry : entries) {
+            lines.append(mapper.writeValueAsString(new ArchivedEntry(store, entry))).append('\n');
+        }
+        try (WriteLock lock = lock()) {
+            Files.writeString(archiveFile(), lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND);
+        }
+        for (WorkshopEntry entry : entries) {
+            firstSeenIndex().remove(store, entry.title(), entry.firstSeen());
+        }
+        LOG.info("Archived {} past workshops of store {} to {}", entries.size(), store, archiveFile());
+    }
+
+    Path archiveFile() {
+        return path.resolveSibling(path.getFileName() + ".archive");
+    }
+
+    record ArchivedEntry(String store, WorkshopEntry entry) {
+    }
+
+    /**
+     * Writes the current state to {@code target} in {@code format}, e.g. a pretty JSON copy of a binary snapshot.
+     */
+    public synchronized void exportTo(Path target, StateCodec format) throws IOException {
+        writeAtomically(target, format.encode(loadOrCreate()));
+        LOG.info("Exported workshop state to {} as {}", target, format);
+    }
+
+    /**
+     * Replaces the current state with the snapshot in {@code source} (any supported format), written back in
+     * this repository's format.
+     */
+    public void importFrom(Path source) throws IOException {
+        WorkshopState state = read(source, null);
+        try (WriteLock lock = lock()) {
+            synchronized (this) {
+                try {
+                    replaceSnapshot(state);
+                    cached = state;
+                    cachedStamp = stamp();
+                    index = FirstSeenIndex.of(state);
+                } catch (IOException | RuntimeException e) {
+                    invalidate();
+                    throw e;
+                }
+            }
+        }
+        LOG.info("Imported workshop state from {} as {}", source, codec);
+    }
+
+    private void persist(WorkshopState state) throws IOException {
+        if (!journaled || !Files.exists(path)) {
+            replaceSnapshot(state);
+            return;
+        }
+        List<StateJournal.Record> changes = changesSincePersisted(state);
+        journal.append(changes);
+        remember(state);
+        LOG.debug("Appended {} records to {}", changes.size(), journal.file());
+        if (!compactionPending && (journal.sizeBytes() >= compactBytes || journal.records() >= compactRecords)) {
+            scheduleCompaction(state);
+        }
+    }
+
+    private void replaceSnapshot(WorkshopState state) throws IOException {
+        writeSnapshot(state);
+        // the new snapshot already holds everything the journal had
+        journal.dropPrefix(journal.sizeBytes());
+        remember(state);
+    }
+
+    /**
+     * Streams a snapshot in whatever format it was written. Store buckets are bound one at a time; with
+     * {@code onlyStore} set, every other store is skipped without being parsed into objects.
+     */
+    private WorkshopState read(Path file, String onlyStore) throws IOException {
+        Map<String, StoreData> stores = new LinkedHashMap<>();
+        Map<String, String> timestamps = new HashMap<>();
+        String lastUpdated = null;
+        ObjectMapper mapper = StateCodec.detect(file).mapper();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file));
+             JsonParser parser = mapper.getFactory().createParser(in)) {
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("lastUpdated".equals(field)) {
+                    lastUpdated = value == JsonToken.VALUE_NULL ? null : parser.getText();
+                } else if ("stores".equals(field) && value == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String store = parser.currentName();
+                        parser.nextToken();
+                        if (onlyStore == null || onlyStore.equals(store)) {
+                            stores.put(store, intern(mapper.readValue(parser, StoreData.class), timestamps));
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return new WorkshopState(stores, lastUpdated);
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Malformed state file: expected " + expected + " but found " + actual);
+        }
+    }
+
+    /**
+     * Entries of one run share their timestamp, and an entry's title is its key: keep one copy of each string.
+     * Binary snapshots leave the title out, so it is taken from the key. Entries saved before titles were
+     * parsed get their name, date and time here.
+     */
+    private static StoreData intern(StoreData data, Map<String, String> timestamps) {
+        if (data.getWorkshops() != null) {
+            data.getWorkshops().replaceAll((title, e) -> e.intern(
+                    e.title() == null || title.equals(e.title()) ? title : e.title(),
+                    t -> timestamps.computeIfAbsent(t, x -> x)));
+        }
+        return data;
+    }
+
+    private FileStamp stamp() throws IOException {
+        return new FileStamp(FileStamp.Part.of(path), FileStamp.Part.of(journal.file()));
+    }
+
+    private void writeSnapshot(WorkshopState state) throws IOException {
+        writeAtomically(path, codec.encode(state));
+    }
+
+    /**
+     * Serializes the state now (it keeps being modified by later runs) and writes it in the background.
+     * Only the journal bytes covered by that serialization are dropped afterwards.
+     */
+    private void scheduleCompaction(WorkshopState state) throws IOException {
+        byte[] snapshot = codec.encode(state);
+        long covered = journal.sizeBytes();
+        LOG.info("Compacting {} ({} bytes) into {}", journal.file(), covered, path);
+        compactionPending = true;
+        compactor.execute(() -> {
+            try (WriteLock lock = lock()) {
+                synchronized (this) {
+                    try {
+                        boolean cacheCurrent = cached != null && stamp().equals(cachedStamp);
+                        writeAtomically(path, snapshot);
+                        journal.dropPrefix(covered);
+                        if (cacheCurrent) {
+                            // same content, new files: keep the in-memory copy valid
+                            cachedStamp = stamp();
+                        }
+                    } finally {
+                        compactionPending = false;
+                    }
+                }
+            } catch (IOException e) {
+                LOG.error("Failed to compact state journal", e);
+                synchronized (this) {
+                    compactionPending = false;
+                }
+            }
+        });
+    }
+
+    private List<StateJournal.Record> changesSincePersisted(WorkshopState state) {
+        List<StateJournal.Record> changes = new ArrayList<>();
+        state.stores().forEach((store, data) -> {
+            Map<String, WorkshopEntry> known = persistedEntries.getOrDefault(store, Map.of());
+            data.getWorkshops().forEach((title, entry) -> {
+                WorkshopEntry before = known.get(title);
+                if (before == null) {
+                    changes.add(new StateJournal.Record(StateJournal.ADD, store, title, entry.firstSeen()));
+                } else if (!before.equals(entry)) {
+                    changes.add(StateJournal.Record.entry(store, entry));
+                }
+            });
+            known.keySet().stream()
+                    .filter(title -> !data.getWorkshops().containsKey(title))
+                    .forEach(title -> changes.add(new StateJournal.Record(StateJournal.ARCHIVED, store, title, null)));
+            if (data.getLastChecked() != null && !data.getLastChecked().equals(persistedLastChecked.get(store))) {
+                changes.add(new StateJournal.Record(StateJournal.CHECKED, store, null, data.getLastChecked()));
+            }
+            if (data.getFingerprint() != null && !data.getFingerprint().equals(persistedFingerprints.get(store))) {
+                changes.add(StateJournal.Record.fingerprint(store, data.getFingerprint(), data.getVersion()));
+            }
+        });
+        if (state.lastUpdated() != null && !Objects.equals(state.lastUpdated(), persistedLastUpdated)) {
+            changes.add(new StateJournal.Record(StateJournal.UPDATED, null, null, state.lastUpdated()));
+        }
+        return changes;
+    }
+
+    private void remember(WorkshopState state) {
+        persistedEntries.clear();
+        persistedLastChecked.clear();
+        persistedFingerprints.clear();
+        state.stores().forEach((store, data) -> {
+            persistedEntries.put(store, new HashMap<>(data.getWorkshops()));
+            persistedLastChecked.put(store, data.getLastChecked());
+            persistedFingerprints.put(store, data.getFingerprint());
+        });
+        persistedLastUpdated = state.lastUpdated();
+    }
+
+    /**
+     * Waits for a pending compaction to finish.
+     */
+    @Override
+    public void close() {
+        compactor.shutdown();
+        try {
+            if (!compactor.awaitTermination(30, TimeUnit.SECONDS)) {
+                LOG.warn("State compaction still running after 30s");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes {@code content} to a temp file next to {@code target}, forces it to disk and renames it over
+     * {@code target}, so readers and a crash only ever see the old or the new file.
+     */
+    static void writeAtomically(Path target, byte[] content) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        fsyncDirectory(target.toAbsolutePath().getParent());
+    }
+
+    private static void fsyncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not supported on every platform/filesystem; the rename is still atomic
+            LOG.trace("Could not fsync directory {}", dir, e);
+        }
     }
 
+    private record FileStamp(Part snapshot, Part journal) {
+
+        private record Part(long size, FileTime modified) {
+
+            static Part of(Path file) throws IOException {
+                if (!Files.exists(file)) {
+                    return null;
+                }
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                return new Part(attrs.size(), attrs.lastModifiedTime());
+            }
+        }
+    }
+
+    /**
+     * A store's workshops. {@code fingerprint} identifies the list the store showed at its last check
+     * ({@link Fingerprint#ofTitles}) and {@code version} counts how often that list changed, so a run seeing
+     * the same fingerprint again knows there is nothing new without comparing titles, and clients can tell
+     * whether a store changed from its version alone.
+     */
     public static class StoreData {
         private Map<String, WorkshopEntry> workshops;
         private String lastChecked;
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private String fingerprint;
+        private long version;
 
         public StoreData() {
         }
@@ -60,5 +546,80 @@ public class WorkshopsRepository {
         public void setLastChecked(String lastChecked) {
             this.lastChecked = lastChecked;
         }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Records the list just scraped; the version goes up when it differs from the previous one.
+         *
+         * @return whether the list changed
+         */
+        public boolean updateFingerprint(String fingerprint) {
+            if (fingerprint.equals(this.fingerprint)) {
+                return false;
+            }
+            this.fingerprint = fingerprint;
+            version++;
+            return true;
+        }
+
+        /**
+         * A copy with the same lastChecked, fingerprint and version, but no workshops (yet).
+         */
+        StoreData withoutWorkshops() {
+            StoreData copy = new StoreData(new LinkedHashMap<>(), lastChecked);
+            copy.setFingerprint(fingerprint, version);
+            return copy;
+        }
+
+        /**
+         * The titles of this store by {@link WorkshopTitle#key}, to recognise a workshop whose title was
+         * respelled.
+         */
+        Map<String, String> titlesByKey() {
+            Map<String, String> byKey = new HashMap<>(workshops.size() * 2);
+            workshops.keySet().forEach(title -> byKey.putIfAbsent(WorkshopTitle.key(title), title));
+            return byKey;
+        }
+
+        /**
+         * Takes out the entries that are no longer listed and whose date (or, without one, their removal) is
+         * before {@code cutoff}. Listed entries stay whatever their date, or the next check would find them new.
+         *
+         * @return the entries taken out
+         */
+        List<WorkshopEntry> removePast(LocalDate cutoff) {
+            List<WorkshopEntry> past = new ArrayList<>();
+            for (Iterator<WorkshopEntry> it = workshops.values().iterator(); it.hasNext(); ) {
+                WorkshopEntry e = it.next();
+                if (!e.listed() && before(e.date() != null ? e.date() : e.removedAt(), cutoff)) {
+                    past.add(e);
+                    it.remove();
+                }
+            }
+            return past;
+        }
+
+        private static boolean before(String isoDateOrInstant, LocalDate cutoff) {
+            try {
+                LocalDate day = isoDateOrInstant.length() == 10
+                        ? LocalDate.parse(isoDateOrInstant)
+                        : LocalDate.ofInstant(Instant.parse(isoDateOrInstant), ZoneOffset.UTC);
+                return day.isBefore(cutoff);
+            } catch (RuntimeException e) {
+                return false;
+            }
+        }
+
+        void setFingerprint(String fingerprint, Long version) {
+            this.fingerprint = fingerprint;
+            this.version = version == null ? 0 : version;
+        }
     }
 }
@@ -0,0 +1,95 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class AdaptiveScheduleTest {
+
+    private static final Instant NOON = Instant.parse("2025-09-01T12:00:00Z");
+    private static final List<String> STORES = List.of("Loulé", "Albufeira");
+
+    @Test
+    public void shrinksAfterChangesAndBacksOffWithinBounds() {
+        AdaptiveSchedule schedule = schedule(null, 0.0, null);
+        assertEquals(schedule.due(NOON), STORES, "unknown stores are checked right away");
+
+        schedule.record(STORES, Map.of("Loulé", 2, "Albufeira", 0), NOON);
+        assertEquals(interval(schedule, "Loulé"), Duration.ofMinutes(180));
+        assertEquals(interval(schedule, "Albufeira"), Duration.ofMinutes(540));
+        assertEquals(schedule.nextDue(), NOON.plus(Duration.ofMinutes(180)));
+
+        for (int i = 0; i < 10; i++) {
+            schedule.record(STORES, Map.of("Loulé", 1, "Albufeira", 0), NOON);
+        }
+        assertEquals(interval(schedule, "Loulé"), Duration.ofMinutes(30), "never below the minimum");
+        assertEquals(interval(schedule, "Albufeira"), Duration.ofMinutes(720), "never above the maximum");
+    }
+
+    @Test
+    public void retriesFailedStoreAfterMinimumKeepingItsInterval() {
+        AdaptiveSchedule schedule = schedule(null, 0.0, null);
+        schedule.record(STORES, Map.of("Albufeira", 0), NOON);
+
+        assertEquals(interval(schedule, "Loulé"), Duration.ofMinutes(360));
+        assertEquals(Instant.ofEpochMilli(schedule.snapshot().get("Loulé").nextRunAt()), NOON.plus(Duration.ofMinutes(30)));
+        assertEquals(schedule.due(NOON.plus(Duration.ofMinutes(30))), List.of("Loulé"));
+    }
+
+    @Test
+    public void jitterStaysWithinSpread() {
+        AdaptiveSchedule schedule = schedule(null, 0.2, null);
+        for (int i = 0; i < 50; i++) {
+            schedule.record(List.of("Loulé"), Map.of("Loulé", 0), NOON);
+            long interval = schedule.snapshot().get("Loulé").intervalMillis();
+            long wait = schedule.snapshot().get("Loulé").nextRunAt() - NOON.toEpochMilli();
+            assertTrue(wait >= interval * 0.8 && wait <= interval * 1.2, "wait " + wait + " for interval " + interval);
+        }
+    }
+
+    @Test
+    public void movesChecksIntoTimeWindow() {
+        AdaptiveSchedule day = schedule(null, 0.0, "07:00-23:00");
+        assertEquals(day.inWindow(NOON), NOON);
+        assertEquals(day.inWindow(Instant.parse("2025-09-01T23:30:00Z")), Instant.parse("2025-09-02T07:00:00Z"));
+        assertEquals(day.inWindow(Instant.parse("2025-09-02T03:00:00Z")), Instant.parse("2025-09-02T07:00:00Z"));
+
+        AdaptiveSchedule night = schedule(null, 0.0, "22:00-02:00");
+        assertEquals(night.inWindow(Instant.parse("2025-09-02T01:00:00Z")), Instant.parse("2025-09-02T01:00:00Z"));
+        assertEquals(night.inWindow(NOON), Instant.parse("2025-09-01T22:00:00Z"));
+
+        day.record(STORES, Map.of("Loulé", 0, "Albufeira", 0), Instant.parse("2025-09-01T20:00:00Z"));
+        assertEquals(day.nextDue(), Instant.parse("2025-09-02T07:00:00Z"));
+    }
+
+    @Test
+    public void keepsLearnedIntervalsAcrossRestarts() throws IOException {
+        Path file = Files.createTempDirectory("schedule").resolve("workshops.json.schedule");
+        AdaptiveSchedule first = schedule(file, 0.0, null);
+        first.record(STORES, Map.of("Loulé", 3, "Albufeira", 0), NOON);
+
+        AdaptiveSchedule restarted = schedule(file, 0.0, null);
+        assertEquals(restarted.snapshot(), first.snapshot());
+        assertTrue(restarted.due(NOON.plus(Duration.ofMinutes(1))).isEmpty(), "restart doesn't trigger a check");
+    }
+
+    private static AdaptiveSchedule schedule(Path file, double jitter, String window) {
+        return new AdaptiveSchedule(file, STORES, Duration.ofMinutes(30), Duration.ofMinutes(720),
+                Duration.ofMinutes(360), jitter, window, ZoneOffset.UTC, new Random(1), NOON);
+    }
+
+    private static Duration interval(AdaptiveSchedule schedule, String store) {
+        return Duration.ofMillis(schedule.snapshot().get(store).intervalMillis());
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+public class AdaptiveTimeoutTest {
+
+    @Test
+    public void usesInitialTimeoutUntilEnoughSamples() {
+        AdaptiveTimeout timeout = new AdaptiveTimeout(Duration.ofSeconds(20), Duration.ofSeconds(1), Duration.ofSeconds(60), 10);
+        timeout.record(Duration.ofMillis(500));
+        timeout.record(Duration.ofMillis(500));
+
+        assertEquals(timeout.current(), Duration.ofSeconds(20));
+    }
+
+    @Test
+    public void followsRecentObservationsWithinBounds() {
+        AdaptiveTimeout timeout = new AdaptiveTimeout(Duration.ofSeconds(20), Duration.ofSeconds(1), Duration.ofSeconds(60), 4);
+        for (int i = 0; i < 4; i++) {
+            timeout.record(Duration.ofMillis(2_000));
+        }
+        assertEquals(timeout.current(), Duration.ofSeconds(6));
+
+        // fast pages shrink the timeout, but never below the minimum
+        for (int i = 0; i < 4; i++) {
+            timeout.record(Duration.ofMillis(100));
+        }
+        assertEquals(timeout.current(), Duration.ofSeconds(1));
+
+        // a slow streak grows it up to the maximum
+        for (int i = 0; i < 4; i++) {
+            timeout.record(Duration.ofSeconds(40));
+        }
+        assertEquals(timeout.current(), Duration.ofSeconds(60));
+    }
+
+    @Test
+    public void samplesSurviveARestart() throws IOException {
+        Path file = Files.createTempDirectory("timeouts").resolve("workshops.json.timeouts");
+        AdaptiveTimeout page = new AdaptiveTimeout(Duration.ofSeconds(20), Duration.ofSeconds(1), Duration.ofSeconds(60), 3);
+        for (long millis : new long[]{1_000, 2_000, 3_000, 4_000}) {
+            page.record(Duration.ofMillis(millis));
+        }
+        AdaptiveTimeout.save(file, Map.of("page", page));
+
+        // a --once run starts from what the previous process learnt
+        AdaptiveTimeout restarted = new AdaptiveTimeout(Duration.ofSeconds(20), Duration.ofSeconds(1), Duration.ofSeconds(60), 3);
+        AdaptiveTimeout list = new AdaptiveTimeout(Duration.ofSeconds(20), Duration.ofSeconds(1), Duration.ofSeconds(60), 3);
+        AdaptiveTimeout.load(file, Map.of("page", restarted, "list", list));
+
+        assertEquals(restarted.samples(), List.of(2_000L, 3_000L, 4_000L));
+        assertEquals(restarted.current(), Duration.ofSeconds(12));
+        assertEquals(list.current(), Duration.ofSeconds(20), "nothing saved for this one yet");
+    }
+}
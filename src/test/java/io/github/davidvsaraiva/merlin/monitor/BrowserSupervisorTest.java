@@ -0,0 +1,111 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class BrowserSupervisorTest {
+
+    @Test
+    public void killsTheWholeProcessTree() throws Exception {
+        Process shell = new ProcessBuilder("sh", "-c", "sleep 60 & sleep 60 & wait").start();
+        ProcessHandle root = shell.toHandle();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (root.descendants().count() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        List<ProcessHandle> tree = root.descendants().toList();
+        assertEquals(tree.size(), 2);
+
+        BrowserSupervisor.killTree(root);
+
+        assertTrue(shell.waitFor(5, TimeUnit.SECONDS));
+        for (ProcessHandle child : tree) {
+            child.onExit().get(5, TimeUnit.SECONDS);
+            assertFalse(child.isAlive());
+        }
+    }
+
+    @Test
+    public void deadlineFiresOnlyWhenNotClosedInTime() throws Exception {
+        CountDownLatch fired = new CountDownLatch(1);
+        try (BrowserSupervisor.Deadline deadline = BrowserSupervisor.deadline(Duration.ofMillis(50), fired::countDown)) {
+            assertTrue(fired.await(5, TimeUnit.SECONDS));
+            assertTrue(deadline.expired());
+        }
+
+        CountDownLatch notFired = new CountDownLatch(1);
+        BrowserSupervisor.Deadline closed = BrowserSupervisor.deadline(Duration.ofMillis(200), notFired::countDown);
+        closed.close();
+        assertFalse(notFired.await(400, TimeUnit.MILLISECONDS));
+        assertFalse(closed.expired());
+    }
+
+    @Test
+    public void recognisesOrphanedBrowsersOnly() {
+        String driver = "/usr/bin/chromedriver";
+        String driverLine = driver + " --port=41234";
+        String chrome = "/opt/google/chrome/chrome";
+        String chromeLine = chrome + " --headless=new --user-data-dir=/tmp/selenium-chrome-profile-123";
+
+        String otherChromeLine = chrome + " --user-data-dir=/home/pi/.config/chrome";
+        List<String> ourBrowser = List.of(chromeLine);
+
+        assertTrue(BrowserSupervisor.isOrphanedBrowser(driver, driverLine, Optional.of("init"), ourBrowser));
+        assertTrue(BrowserSupervisor.isOrphanedBrowser(driver, driverLine, Optional.empty(), ourBrowser));
+        assertTrue(BrowserSupervisor.isOrphanedBrowser(chrome, chromeLine, Optional.of("/usr/lib/systemd/systemd"), List.of()));
+        // still owned by a running monitor
+        assertFalse(BrowserSupervisor.isOrphanedBrowser(driver, driverLine, Optional.of("/usr/bin/java"), ourBrowser));
+        assertFalse(BrowserSupervisor.isOrphanedBrowser(chrome, chromeLine, Optional.of(driver), List.of()));
+        // someone else's browser, or a driver run by another service such as a Selenium node
+        assertFalse(BrowserSupervisor.isOrphanedBrowser(chrome, otherChromeLine, Optional.of("init"), List.of()));
+        assertFalse(BrowserSupervisor.isOrphanedBrowser(driver, driverLine, Optional.of("systemd"), List.of(otherChromeLine)));
+        assertFalse(BrowserSupervisor.isOrphanedBrowser(driver, driverLine, Optional.of("systemd"), List.of()));
+        assertFalse(BrowserSupervisor.isOrphanedBrowser("/usr/bin/sleep", "sleep 60", Optional.of("init"), List.of()));
+    }
+
+    @Test
+    public void deletesOnlyOldUnusedProfiles() throws Exception {
+        Path tmp = Files.createTempDirectory("supervisor-test");
+        Path stale = Files.createDirectories(tmp.resolve("selenium-chrome-profile-1").resolve("Default"));
+        Path inUse = Files.createDirectories(tmp.resolve("selenium-chrome-profile-2"));
+        Path fresh = Files.createDirectories(tmp.resolve("selenium-chrome-profile-3"));
+        Path other = Files.createDirectories(tmp.resolve("something-else"));
+        FileTime old = FileTime.from(Instant.now().minus(Duration.ofHours(2)));
+        for (Path dir : List.of(stale.getParent(), inUse, other)) {
+            Files.setLastModifiedTime(dir, old);
+        }
+        try {
+            int removed = BrowserSupervisor.deleteStaleProfiles(tmp, Duration.ofMinutes(10), inUse::equals);
+
+            assertEquals(removed, 1);
+            assertFalse(Files.exists(stale.getParent()));
+            assertTrue(Files.exists(inUse));
+            assertTrue(Files.exists(fresh));
+            assertTrue(Files.exists(other));
+        } finally {
+            BrowserSupervisor.deleteRecursively(tmp);
+        }
+    }
+
+    @Test
+    public void measuresResidentMemoryOfATree() {
+        if (!Files.exists(Path.of("/proc/self/status"))) {
+            throw new SkipException("needs /proc");
+        }
+        assertTrue(BrowserSupervisor.rssMb(ProcessHandle.current()) > 0);
+    }
+}
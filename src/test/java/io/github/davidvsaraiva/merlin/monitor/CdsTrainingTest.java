@@ -0,0 +1,29 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+public class CdsTrainingTest {
+
+    @Test
+    public void runsOfflineAndCleansUp() throws Exception {
+        Path tmp = Path.of(System.getProperty("java.io.tmpdir"));
+        long before = trainingDirs(tmp);
+
+        // throws when the built-in markup no longer parses
+        CdsTraining.run();
+
+        assertEquals(trainingDirs(tmp), before);
+    }
+
+    private static long trainingDirs(Path tmp) throws Exception {
+        try (Stream<Path> files = Files.list(tmp)) {
+            return files.filter(p -> p.getFileName().toString().startsWith("merlin-cds")).count();
+        }
+    }
+}
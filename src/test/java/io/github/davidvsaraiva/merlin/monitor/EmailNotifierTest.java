@@ -0,0 +1,76 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import jakarta.mail.MessagingException;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+public class EmailNotifierTest {
+
+    private static final List<String> RECIPIENTS = List.of("ana@example.com", "rui@example.com", "rita@example.com");
+
+    @Test
+    public void sendsIndividualMessagesOverOneConnection() throws Exception {
+        try (SmtpStub smtp = new SmtpStub(Set.of())) {
+            notifier(smtp, EmailNotifier.Delivery.INDIVIDUAL, RECIPIENTS).send("Novos workshops (1)", "[Loulé] Como pintar");
+
+            assertEquals(smtp.connections.get(), 1);
+            assertEquals(smtp.logins.get(), 1);
+            assertEquals(smtp.mails.size(), 3);
+            for (int i = 0; i < RECIPIENTS.size(); i++) {
+                assertEquals(smtp.mails.get(i).recipients(), List.of(RECIPIENTS.get(i)));
+                assertTrue(smtp.mails.get(i).data().contains("To: " + RECIPIENTS.get(i)));
+            }
+        }
+    }
+
+    @Test
+    public void sendsOneBccMessage() throws Exception {
+        try (SmtpStub smtp = new SmtpStub(Set.of())) {
+            notifier(smtp, EmailNotifier.Delivery.BCC, RECIPIENTS).send("Novos workshops (1)", "[Loulé] Como pintar");
+
+            assertEquals(smtp.connections.get(), 1);
+            assertEquals(smtp.mails.size(), 1);
+            SmtpStub.Mail mail = smtp.mails.get(0);
+            assertEquals(mail.recipients(), RECIPIENTS);
+            assertFalse(mail.data().contains("rui@example.com"), "BCC recipients are not in the headers");
+            assertTrue(mail.data().contains("To: monitor@example.com"));
+        }
+    }
+
+    @Test
+    public void permanentRejectionCountsAsDelivered() throws Exception {
+        try (SmtpStub smtp = new SmtpStub(Set.of("rui@example.com"))) {
+            notifier(smtp, EmailNotifier.Delivery.INDIVIDUAL, RECIPIENTS).send("s", "b");
+
+            assertEquals(smtp.connections.get(), 1);
+            assertEquals(smtp.mails.stream().flatMap(m -> m.recipients().stream()).toList(),
+                    List.of("ana@example.com", "rita@example.com"));
+        }
+    }
+
+    @Test
+    public void keepsSendingAfterDeferredRecipient() throws Exception {
+        try (SmtpStub smtp = new SmtpStub(Set.of(), Set.of("rui@example.com"))) {
+            EmailNotifier notifier = notifier(smtp, EmailNotifier.Delivery.INDIVIDUAL, RECIPIENTS);
+
+            MessagingException e = expectThrows(MessagingException.class, () -> notifier.send("s", "b"));
+            assertTrue(e.getMessage().contains("rui@example.com"));
+            assertEquals(smtp.connections.get(), 1);
+            assertEquals(smtp.mails.stream().flatMap(m -> m.recipients().stream()).toList(),
+                    List.of("ana@example.com", "rita@example.com"));
+        }
+    }
+
+    private static EmailNotifier notifier(SmtpStub smtp, EmailNotifier.Delivery delivery, List<String> to) {
+        return new EmailNotifier("127.0.0.1", smtp.port(), false, "user", "secret", "monitor@example.com", to,
+                delivery, Duration.ofSeconds(2), Duration.ofSeconds(2));
+    }
+}
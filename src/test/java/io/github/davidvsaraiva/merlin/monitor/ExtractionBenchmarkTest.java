@@ -0,0 +1,104 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.events.EventFiringDecorator;
+import org.openqa.selenium.support.events.WebDriverListener;
+import org.openqa.selenium.support.ui.Select;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Compares the old per-element extraction (Select plus findElements/isDisplayed/getText) with the single
+ * script call FormWatcher uses now, counting WebDriver round trips and elapsed time on example.html.
+ */
+@Test(groups = "benchmark")
+public class ExtractionBenchmarkTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExtractionBenchmarkTest.class);
+
+    private static final int ITERATIONS = 5;
+    private static final By WORKSHOP_LABELS = By.cssSelector("ul.ChoiceStructure li.Selection span.LabelWrapper > label");
+
+    @Test
+    public void scriptExtractionUsesFewerRoundTrips() throws Exception {
+        URL res = ExtractionBenchmarkTest.class.getResource("/io/github/davidvsaraiva/merlin/monitor/example.html");
+        assertNotNull(res, "example.html must be on the test classpath");
+
+        RoundTripCounter counter = new RoundTripCounter();
+        WebDriver driver = new EventFiringDecorator<>(counter).decorate(FormWatcher.createWebDriver());
+        try {
+            driver.get(res.toURI().toString());
+            WebElement dropdown = driver.findElement(By.id("QR~QID18"));
+
+            Result before = measure(counter, () -> perElement(driver, dropdown));
+            Result after = measure(counter, () -> singleScript(driver, dropdown));
+            LOG.info("per-element: {} round trips, {} us | single script: {} round trips, {} us",
+                    before.roundTrips, before.micros, after.roundTrips, after.micros);
+
+            assertEquals(after.titles, 9, "the script reads Loulé's block only");
+            assertTrue(before.titles >= after.titles);
+            assertEquals(after.roundTrips, 2, "one call to select the store, one to read the list");
+            assertTrue(after.roundTrips < before.roundTrips);
+        } finally {
+            driver.quit();
+        }
+    }
+
+    private static List<String> perElement(WebDriver driver, WebElement dropdown) {
+        new Select(dropdown).selectByVisibleText("Loulé");
+        return driver.findElements(WORKSHOP_LABELS).stream()
+                .filter(WebElement::isDisplayed)
+                .map(WebElement::getText)
+                .map(String::trim)
+                .filter(s -> !s.isBlank())
+                .toList();
+    }
+
+    private static List<String> singleScript(WebDriver driver, WebElement dropdown) {
+        ((JavascriptExecutor) driver).executeScript(PageScripts.SELECT_STORE, dropdown, "Loulé");
+        return FormWatcher.readWorkshops(driver, "Loulé").titles();
+    }
+
+    private static Result measure(RoundTripCounter counter, Supplier<List<String>> extraction) {
+        extraction.get(); // warm up
+        counter.calls.set(0);
+        long start = System.nanoTime();
+        int titles = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            titles = extraction.get().size();
+        }
+        long micros = (System.nanoTime() - start) / 1_000 / ITERATIONS;
+        return new Result(counter.calls.get() / ITERATIONS, micros, titles);
+    }
+
+    private record Result(int roundTrips, long micros, int titles) {
+    }
+
+    private static final class RoundTripCounter implements WebDriverListener {
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public void beforeAnyWebDriverCall(WebDriver driver, Method method, Object[] args) {
+            calls.incrementAndGet();
+        }
+
+        @Override
+        public void beforeAnyWebElementCall(WebElement element, Method method, Object[] args) {
+            calls.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+
+public class FeedServerTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FeedServerTest.class);
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private FeedServer server;
+    private String url;
+
+    @BeforeClass
+    public void startServer() throws IOException {
+        server = new FeedServer(new InetSocketAddress("127.0.0.1", 0), 4);
+        server.publish(state(Map.of(
+                "Loulé", Map.of("Como pintar. Dia 01/10, 10h", "2025-09-01T10:00:00Z",
+                        "Iniciação à bricolage", "2025-09-03T10:00:00Z"),
+                "Albufeira", Map.of("Como reciclar um abajur. Dia 13/09, 10h", "2025-09-02T10:00:00Z"))));
+        server.start();
+        url = "http://127.0.0.1:" + server.port() + FeedServer.PATH;
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopServer() {
+        server.close();
+    }
+
+    @Test
+    public void answersNotModifiedForCurrentEtag() throws Exception {
+        HttpResponse<String> first = get(url, Map.of());
+        assertEquals(first.statusCode(), 200);
+        String etag = first.headers().firstValue("ETag").orElseThrow();
+        assertTrue(etag.startsWith("\""), "strong ETag");
+        WorkshopState body = mapper.readValue(first.body(), WorkshopState.class);
+        assertEquals(body.stores().get("Loulé").getWorkshops().size(), 2);
+
+        HttpResponse<String> again = get(url, Map.of("If-None-Match", etag));
+        assertEquals(again.statusCode(), 304);
+        assertEquals(again.body(), "");
+        assertEquals(get(url, Map.of("If-None-Match", "W/" + etag)).statusCode(), 304);
+        assertEquals(get(url, Map.of("If-None-Match", "\"stale\"")).statusCode(), 200);
+    }
+
+    @Test
+    public void compressesWhenAccepted() throws Exception {
+        HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(URI.create(url))
+                .header("Accept-Encoding", "gzip").build(), HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(response.statusCode(), 200);
+        assertEquals(response.headers().firstValue("Content-Encoding").orElse(""), "gzip");
+        String json;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+            json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        assertEquals(mapper.readValue(json, WorkshopState.class).stores().size(), 2);
+        assertNotEquals(response.headers().firstValue("ETag").orElseThrow(),
+                get(url, Map.of()).headers().firstValue("ETag").orElseThrow(), "each encoding has its own ETag");
+
+        assertFalse(FeedServer.acceptsGzip("gzip;q=0, identity"));
+        assertTrue(FeedServer.acceptsGzip("deflate, gzip;q=0.5"));
+    }
+
+    @Test
+    public void returnsOnlyEntriesSeenAfterSince() throws Exception {
+        HttpResponse<String> response = get(url + "?since=2025-09-01T10:00:00Z", Map.of());
+        assertEquals(response.statusCode(), 200);
+        WorkshopState delta = mapper.readValue(response.body(), WorkshopState.class);
+        assertEquals(delta.stores().get("Loulé").getWorkshops().keySet(), Set.of("Iniciação à bricolage"));
+        assertEquals(delta.stores().get("Albufeira").getWorkshops().size(), 1);
+        assertEquals(delta.stores().get("Albufeira").getLastChecked(), "2025-09-04T10:00:00Z");
+
+        HttpResponse<String> none = get(url + "?since=2025-09-03T10:00:00Z", Map.of());
+        assertTrue(mapper.readValue(none.body(), WorkshopState.class).stores().values().stream()
+                .allMatch(s -> s.getWorkshops().isEmpty()));
+        assertEquals(get(url + "?since=yesterday", Map.of()).statusCode(), 400);
+    }
+
+    @Test
+    public void servesConcurrentPollers() throws Exception {
+        int clients = 16;
+        int requestsPerClient = 200;
+        String etag = get(url, Map.of()).headers().firstValue("ETag").orElseThrow();
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        try {
+            List<Callable<Integer>> pollers = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                int id = c;
+                pollers.add(() -> {
+                    int ok = 0;
+                    for (int i = 0; i < requestsPerClient; i++) {
+                        // most pollers already have the current version, a few fetch deltas
+                        Map<String, String> headers = id % 4 == 0 ? Map.of() : Map.of("If-None-Match", etag);
+                        String target = id % 4 == 0 ? url + "?since=2025-09-01T00:00:00Z" : url;
+                        int status = get(target, headers).statusCode();
+                        if (status == 200 || status == 304) {
+                            ok++;
+                        }
+                    }
+                    return ok;
+                });
+            }
+            long start = System.nanoTime();
+            int ok = 0;
+            for (Future<Integer> f : pool.invokeAll(pollers)) {
+                ok += f.get();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            LOG.info("{} feed requests from {} clients in {} s ({} req/s)", ok, clients,
+                    String.format("%.2f", seconds), String.format("%.0f", ok / seconds));
+            assertEquals(ok, clients * requestsPerClient);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private HttpResponse<String> get(String target, Map<String, String> headers) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(target));
+        headers.forEach(request::header);
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static WorkshopState state(Map<String, Map<String, String>> firstSeenByStore) {
+        Map<String, WorkshopsRepository.StoreData> stores = new LinkedHashMap<>();
+        firstSeenByStore.forEach((store, titles) -> {
+            Map<String, WorkshopEntry> entries = new LinkedHashMap<>();
+            titles.forEach((title, seen) -> entries.put(title, new WorkshopEntry(title, seen)));
+            stores.put(store, new WorkshopsRepository.StoreData(entries, "2025-09-04T10:00:00Z"));
+        });
+        return new WorkshopState(stores, "2025-09-04T10:00:00Z");
+    }
+}
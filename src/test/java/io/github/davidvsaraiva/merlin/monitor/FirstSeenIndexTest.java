@@ -0,0 +1,144 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class FirstSeenIndexTest {
+
+    private static final List<String> STORES = List.of("Loulé", "Albufeira", "Faro", "Portimão");
+    private static final long START = Instant.parse("2025-01-01T00:00:00Z").toEpochMilli();
+    private static final long SPAN = 365L * 24 * 3600 * 1000;
+
+    @Test
+    public void matchesBruteForceScan() {
+        Random random = new Random(42);
+        WorkshopState state = randomState(random, 3_000);
+        FirstSeenIndex index = FirstSeenIndex.of(state);
+
+        // workshops found later, some with out of order timestamps
+        for (int i = 0; i < 500; i++) {
+            String store = STORES.get(random.nextInt(STORES.size()));
+            String title = "Later " + i;
+            String seen = Instant.ofEpochMilli(START + (long) (random.nextDouble() * SPAN)).toString();
+            state.stores().get(store).getWorkshops().put(title, new WorkshopEntry(title, seen));
+            index.add(store, title, seen);
+        }
+        assertEquals(index.size(), 3_500);
+
+        for (int q = 0; q < 200; q++) {
+            String store = random.nextBoolean() ? null : STORES.get(random.nextInt(STORES.size()));
+            long a = START + (long) (random.nextDouble() * SPAN);
+            long b = a + (long) (random.nextDouble() * SPAN / 10);
+            Instant from = Instant.ofEpochMilli(a);
+            Instant to = Instant.ofEpochMilli(b);
+
+            List<FirstSeenIndex.Hit> hits = index.range(store, from, to);
+            List<FirstSeenIndex.Hit> expected = scan(state, store).stream()
+                    .filter(h -> !h.firstSeen().isBefore(from) && h.firstSeen().isBefore(to))
+                    .toList();
+            assertEquals(hits.size(), expected.size());
+            assertEquals(keys(hits), keys(expected), "range " + store + " " + from + " " + to);
+            assertTrue(isSorted(hits), "oldest first");
+            assertEquals(keys(index.after(store, from)),
+                    keys(scan(state, store).stream().filter(h -> h.firstSeen().isAfter(from)).toList()), "after " + from);
+
+            int n = random.nextInt(20);
+            List<FirstSeenIndex.Hit> newest = index.newest(store, n);
+            List<FirstSeenIndex.Hit> all = scan(state, store);
+            List<Long> expectedTimes = all.stream().map(FirstSeenIndex.Hit::firstSeenNanos)
+                    .sorted(Comparator.reverseOrder()).limit(n).toList();
+            assertEquals(newest.stream().map(FirstSeenIndex.Hit::firstSeenNanos).toList(), expectedTimes);
+        }
+    }
+
+    @Test
+    public void afterKeepsTheSubMillisecondPart() {
+        FirstSeenIndex index = new FirstSeenIndex();
+        index.add("Loulé", "Seen with the since run", "2025-09-01T10:00:00.000100Z");
+        index.add("Loulé", "Seen later in the same millisecond", "2025-09-01T10:00:00.000300Z");
+
+        List<FirstSeenIndex.Hit> after = index.after(null, Instant.parse("2025-09-01T10:00:00.000100Z"));
+
+        assertEquals(after.stream().map(FirstSeenIndex.Hit::title).toList(), List.of("Seen later in the same millisecond"));
+        assertEquals(after.get(0).firstSeen(), Instant.parse("2025-09-01T10:00:00.000300Z"));
+    }
+
+    @Test
+    public void skipsUnparsableTimestamps() {
+        FirstSeenIndex index = new FirstSeenIndex();
+        index.add("Loulé", "Old entry", "...");
+        index.add("Loulé", "Como pintar", "2025-09-01T10:00:00Z");
+        assertEquals(index.size(), 1);
+        assertEquals(index.newest("Faro", 5), List.of());
+    }
+
+    @Test
+    public void repositoryRebuildsIndexOnLoad() throws IOException {
+        Path path = Files.createTempDirectory("index-load").resolve("workshops.json");
+        WorkshopState state = randomState(new Random(7), 100);
+        new WorkshopsRepository(path).save(state);
+
+        WorkshopsRepository repository = new WorkshopsRepository(path);
+        repository.loadOrCreate();
+        FirstSeenIndex index = repository.firstSeenIndex();
+        assertEquals(index.size(), 100);
+        assertEquals(keys(index.range("Faro", Instant.ofEpochMilli(START), Instant.ofEpochMilli(START + SPAN))),
+                keys(scan(state, "Faro")));
+    }
+
+    private static WorkshopState randomState(Random random, int entries) {
+        Map<String, WorkshopsRepository.StoreData> stores = new LinkedHashMap<>();
+        STORES.forEach(s -> stores.put(s, new WorkshopsRepository.StoreData(new LinkedHashMap<>(), null)));
+        for (int i = 0; i < entries; i++) {
+            String store = STORES.get(random.nextInt(STORES.size()));
+            String title = "Workshop " + i;
+            // a few runs share a timestamp
+            long millis = START + (random.nextInt(10) == 0 ? 0 : (long) (random.nextDouble() * SPAN));
+            stores.get(store).getWorkshops().put(title, new WorkshopEntry(title, Instant.ofEpochMilli(millis).toString()));
+        }
+        return new WorkshopState(stores, null);
+    }
+
+    private static List<FirstSeenIndex.Hit> scan(WorkshopState state, String store) {
+        List<FirstSeenIndex.Hit> hits = new ArrayList<>();
+        state.stores().forEach((s, data) -> {
+            if (store == null || store.equals(s)) {
+                data.getWorkshops().values().forEach(e ->
+                        hits.add(new FirstSeenIndex.Hit(s, e.title(), nanos(Instant.parse(e.firstSeen())))));
+            }
+        });
+        return hits;
+    }
+
+    private static long nanos(Instant t) {
+        return t.getEpochSecond() * 1_000_000_000L + t.getNano();
+    }
+
+    private static Set<String> keys(List<FirstSeenIndex.Hit> hits) {
+        return hits.stream().map(h -> h.store() + "|" + h.title() + "|" + h.firstSeenNanos()).collect(Collectors.toSet());
+    }
+
+    private static boolean isSorted(List<FirstSeenIndex.Hit> hits) {
+        for (int i = 1; i < hits.size(); i++) {
+            if (hits.get(i - 1).firstSeenNanos() > hits.get(i).firstSeenNanos()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
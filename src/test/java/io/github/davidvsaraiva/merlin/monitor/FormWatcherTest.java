@@ -6,7 +6,10 @@ import org.testng.annotations.Test;
 import java.net.URI;
 import java.net.URL;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
@@ -26,11 +29,51 @@ public class FormWatcherTest {
     @Test
     public void readsWorkshopsFromLocalFile() {
         // Pass the file:// URL to your class
-        FormWatcher watcher = new FormWatcher(fileUrl);
-
-        List<String> workshops = watcher.fetchWorkshopsForStore("Loulé");
+        List<String> workshops;
+        try (FormWatcher watcher = new FormWatcher(fileUrl)) {
+            workshops = watcher.fetchWorkshopsForStore("Loulé");
+        }
 
         assertFalse(workshops.isEmpty(), "Should list workshops");
         assertTrue(workshops.stream().anyMatch(s -> s.contains("Como regularizar e colar cerâmica em parede e pavimento")), "Expected a known workshop");
     }
+
+    @Test
+    public void readsEveryStoreFromASinglePageLoad() {
+        Map<String, List<String>> workshops;
+        try (FormWatcher watcher = new FormWatcher(fileUrl)) {
+            workshops = watcher.fetchWorkshopsForStores(List.of("Loulé", "Albufeira"));
+        }
+
+        assertEquals(workshops.keySet(), Set.of("Loulé", "Albufeira"));
+        assertTrue(workshops.get("Albufeira").stream().anyMatch(s -> s.contains("Como reciclar um abajur")));
+        assertFalse(workshops.get("Loulé").stream().anyMatch(s -> s.contains("Como reciclar um abajur")),
+                "Loulé must not include Albufeira's workshops");
+    }
+
+    @Test
+    public void leavesOutAStoreMissingFromTheDropdown() {
+        Map<String, List<String>> workshops;
+        try (FormWatcher watcher = new FormWatcher(fileUrl)) {
+            workshops = watcher.fetchWorkshopsForStores(List.of("Atlantida", "Loulé"));
+        }
+
+        assertEquals(workshops.keySet(), Set.of("Loulé"));
+        assertFalse(workshops.get("Loulé").isEmpty());
+    }
+
+    @Test
+    public void readsConsecutiveStoresWithTheSameOrNoWorkshops() throws Exception {
+        String sameLists = FormWatcherTest.class.getResource("/io/github/davidvsaraiva/merlin/monitor/same-lists.html")
+                .toURI().toString();
+        Map<String, List<String>> workshops;
+        try (FormWatcher watcher = new FormWatcher(sameLists)) {
+            workshops = watcher.fetchWorkshopsForStores(List.of("Faro", "Tavira", "Olhão"));
+        }
+
+        assertEquals(workshops.keySet(), Set.of("Faro", "Tavira", "Olhão"));
+        assertEquals(workshops.get("Faro").size(), 2);
+        assertEquals(workshops.get("Tavira"), workshops.get("Faro"), "the same list twice in a row is still read");
+        assertTrue(workshops.get("Olhão").isEmpty(), "a store without workshops reads as empty, not as a timeout");
+    }
 }
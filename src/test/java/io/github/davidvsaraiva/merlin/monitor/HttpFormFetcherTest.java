@@ -0,0 +1,191 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class HttpFormFetcherTest {
+
+    private static final String SURVEY_PAYLOAD = """
+            <html><body><script type="application/json">
+            {"Questions": {
+              "QID18": {"QuestionText": "Selecione a sua loja", "Choices": {"1": {"Display": "Loulé"}}},
+              "QID34": {"QuestionText": "Em que workshop quer participar na loja de <b>Loulé</b>?",
+                        "Choices": {"1": {"Display": "Como pintar. Dia 01/10, 10h."}, "2": {"Display": " "}}}
+            }}
+            </script></body></html>
+            """;
+
+    private static final String SCRIPT_RENDERED = """
+            <html><body>
+            <select id="QR~QID18"><option>Loulé</option></select>
+            <div class="QuestionOuter"><div class="QuestionText">Em que workshop quer participar na loja de Loulé?</div>
+            <ul class="ChoiceStructure"></ul></div>
+            </body></html>
+            """;
+
+    private HttpServer server;
+    private String baseUrl;
+    private final RecordingFallback fallback = new RecordingFallback();
+
+    @BeforeClass
+    public void startServer() throws IOException {
+        byte[] example;
+        try (InputStream in = HttpFormFetcherTest.class.getResourceAsStream("/io/github/davidvsaraiva/merlin/monitor/example.html")) {
+            assertNotNull(in, "example.html must be on the test classpath");
+            example = in.readAllBytes();
+        }
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/form", exchange -> respond(exchange, 200, example));
+        server.createContext("/payload", exchange -> respond(exchange, 200, SURVEY_PAYLOAD.getBytes(StandardCharsets.UTF_8)));
+        server.createContext("/rendered", exchange -> respond(exchange, 200, SCRIPT_RENDERED.getBytes(StandardCharsets.UTF_8)));
+        server.createContext("/broken", exchange -> respond(exchange, 500, new byte[0]));
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @BeforeMethod
+    public void resetFallback() {
+        fallback.requested.clear();
+    }
+
+    @Test
+    public void readsEveryStoreFromExamplePage() {
+        HttpFormFetcher fetcher = new HttpFormFetcher(baseUrl + "/form", fallback);
+
+        Map<String, List<String>> workshops = fetcher.fetchWorkshopsForStores(List.of("Loulé", "Albufeira"));
+
+        assertEquals(workshops.get("Loulé").size(), 9);
+        assertTrue(workshops.get("Loulé").contains("Como regularizar e colar cerâmica em parede e pavimento. Dia 06/09, 10h."));
+        assertTrue(workshops.get("Albufeira").contains("Como reciclar um abajur. Dia 13/09, 10h."));
+        assertFalse(workshops.get("Loulé").contains("Como reciclar um abajur. Dia 13/09, 10h."));
+        assertTrue(fallback.requested.isEmpty(), "no browser needed for a parsable page");
+    }
+
+    @Test
+    public void fallsBackOnlyForStoresItCannotParse() {
+        HttpFormFetcher fetcher = new HttpFormFetcher(baseUrl + "/form", fallback);
+
+        // Alfragide is in the dropdown but the page has no workshop block for it
+        Map<String, List<String>> workshops = fetcher.fetchWorkshopsForStores(List.of("Alfragide", "Loule"));
+
+        assertEquals(fallback.requested, List.of("Alfragide"));
+        assertEquals(List.copyOf(workshops.keySet()), List.of("Alfragide", "Loule"));
+        assertEquals(workshops.get("Alfragide"), List.of("from browser"));
+        assertEquals(workshops.get("Loule").size(), 9, "accents are ignored when matching store names");
+    }
+
+    @Test
+    public void reusesParsedStoresWhileThePageIsUnchanged() {
+        HttpFormFetcher fetcher = new HttpFormFetcher(baseUrl + "/form", fallback);
+
+        Map<String, List<String>> first = fetcher.fetchWorkshopsForStores(List.of("Loulé", "Albufeira"));
+        Map<String, List<String>> second = fetcher.fetchWorkshopsForStores(List.of("Loulé", "Albufeira"));
+
+        assertEquals(second, first);
+        assertSame(second.get("Loulé"), first.get("Loulé"), "unchanged page is not parsed again");
+    }
+
+    @Test
+    public void fallsBackWhenPageFailsToLoad() {
+        HttpFormFetcher fetcher = new HttpFormFetcher(baseUrl + "/broken", fallback);
+
+        assertEquals(fetcher.fetchWorkshopsForStore("Loulé"), List.of("from browser"));
+        assertEquals(fallback.requested, List.of("Loulé"));
+    }
+
+    @Test
+    public void fallsBackWhenTheStoreBlockHasNoLabels() {
+        HttpFormFetcher fetcher = new HttpFormFetcher(baseUrl + "/rendered", fallback);
+
+        assertEquals(fetcher.fetchWorkshopsForStore("Loulé"), List.of("from browser"));
+        assertEquals(fallback.requested, List.of("Loulé"));
+    }
+
+    @Test
+    public void keepsParsedStoresWhenTheFallbackFails() {
+        WorkshopSource failing = new RecordingFallback() {
+            @Override
+            public Map<String, List<String>> fetchWorkshopsForStores(Collection<String> storeNames) {
+                super.fetchWorkshopsForStores(storeNames);
+                throw new IllegalStateException("no browser");
+            }
+        };
+        HttpFormFetcher fetcher = new HttpFormFetcher(baseUrl + "/form", failing);
+
+        Map<String, List<String>> workshops = fetcher.fetchWorkshopsForStores(List.of("Alfragide", "Loulé"));
+
+        assertEquals(List.copyOf(workshops.keySet()), List.of("Loulé"), "the store left to the browser is left out");
+        assertEquals(workshops.get("Loulé").size(), 9);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void failsWhenTheFallbackFailsForEveryStore() {
+        WorkshopSource failing = new RecordingFallback() {
+            @Override
+            public Map<String, List<String>> fetchWorkshopsForStores(Collection<String> storeNames) {
+                throw new IllegalStateException("no browser");
+            }
+        };
+
+        new HttpFormFetcher(baseUrl + "/broken", failing).fetchWorkshopsForStores(List.of("Loulé"));
+    }
+
+    @Test
+    public void readsEmbeddedSurveyPayload() {
+        HttpFormFetcher fetcher = new HttpFormFetcher(baseUrl + "/payload", fallback);
+
+        assertEquals(fetcher.fetchWorkshopsForStore("Loulé"), List.of("Como pintar. Dia 01/10, 10h."));
+        assertTrue(fallback.requested.isEmpty());
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static class RecordingFallback implements WorkshopSource {
+        private final List<String> requested = new ArrayList<>();
+
+        @Override
+        public List<String> fetchWorkshopsForStore(String storeName) {
+            return fetchWorkshopsForStores(List.of(storeName)).get(storeName);
+        }
+
+        @Override
+        public Map<String, List<String>> fetchWorkshopsForStores(Collection<String> storeNames) {
+            requested.addAll(storeNames);
+            Map<String, List<String>> result = new LinkedHashMap<>();
+            storeNames.forEach(s -> result.put(s, List.of("from browser")));
+            return result;
+        }
+    }
+}
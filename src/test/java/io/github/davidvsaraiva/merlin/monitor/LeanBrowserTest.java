@@ -0,0 +1,42 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+
+public class LeanBrowserTest {
+
+    @Test
+    public void concurrentSessionsGetDistinctProfiles() throws Exception {
+        Path root = Files.createTempDirectory("lean-profile-test");
+
+        Optional<LeanBrowser.ProfileLock> first = LeanBrowser.lockProfile(root, 2);
+        Optional<LeanBrowser.ProfileLock> second = LeanBrowser.lockProfile(root, 2);
+        assertTrue(first.isPresent() && second.isPresent());
+        assertNotEquals(first.get().dir(), second.get().dir());
+
+        assertFalse(LeanBrowser.lockProfile(root, 2).isPresent(), "every slot is taken");
+
+        first.get().release();
+        Optional<LeanBrowser.ProfileLock> reused = LeanBrowser.lockProfile(root, 2);
+        assertTrue(reused.isPresent());
+        assertEquals(reused.get().dir(), first.get().dir(), "a released profile is warm and reused");
+
+        reused.get().release();
+        second.get().release();
+    }
+
+    @Test
+    public void keepsStylesheetsByDefault() {
+        // hidden question blocks of other stores must stay hidden for the label visibility checks
+        assertFalse(LeanBrowser.blockedPatterns().stream().anyMatch(p -> p.contains("css")));
+        assertTrue(LeanBrowser.blockedPatterns().contains("*.png"));
+    }
+}
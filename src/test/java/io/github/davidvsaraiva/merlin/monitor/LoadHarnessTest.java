@@ -0,0 +1,140 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Drives the whole {@link Main#runOnce} pipeline (scrape, diff, outbox, state save, email) against a
+ * {@link SyntheticForm} and an {@link SmtpStub}, and logs throughput, p50/p99 run time and peak RSS.
+ * <p>
+ * Part of the {@code benchmark} group, which only runs with the {@code jmh} profile, e.g.
+ * {@code mvn -Pjmh test -Dtest=LoadHarnessTest -Dload.stores=50 -Dload.workshops=500 -Dload.latencyMs=300}. With
+ * {@code -Dload.engine=selenium} (needs Chrome) or a {@code load.renderDelayMs} the stores are read in a browser,
+ * {@code load.parallelism} of them at a time.
+ */
+@Test(groups = "benchmark")
+public class LoadHarnessTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoadHarnessTest.class);
+
+    private final int stores = Integer.getInteger("load.stores", 5);
+    private final int workshops = Integer.getInteger("load.workshops", 50);
+    private final int newPerRun = Integer.getInteger("load.newPerRun", 2);
+    private final int runs = Integer.getInteger("load.runs", 5);
+    private final Duration latency = Duration.ofMillis(Integer.getInteger("load.latencyMs", 0));
+    private final Duration renderDelay = Duration.ofMillis(Integer.getInteger("load.renderDelayMs", 0));
+    private final String engine = System.getProperty("load.engine", renderDelay.isZero() ? "http" : "selenium");
+    private final int parallelism = Integer.getInteger("load.parallelism", 1);
+
+    @Test
+    public void runsThePipelineAgainstASyntheticForm() throws Exception {
+        Path dir = Files.createTempDirectory("load-harness");
+        Path statePath = dir.resolve("workshops.json");
+        try (SyntheticForm form = new SyntheticForm(stores, workshops, newPerRun, latency, renderDelay);
+             SmtpStub smtp = new SmtpStub(Set.of());
+             PeakRss rss = new PeakRss();
+             WebDriverPool pool = WebDriverPool.fromEnv(FormWatcher::createWebDriver, parallelism)) {
+            EmailNotifier mail = new EmailNotifier("127.0.0.1", smtp.port(), false, "user", "secret",
+                    "monitor@example.com", List.of("ana@example.com"));
+            NotificationOutbox outbox = new NotificationOutbox(statePath.resolveSibling("workshops.json.outbox"),
+                    items -> Main.sendDigest(mail, form.url(), items), Duration.ofSeconds(1), Duration.ofSeconds(1));
+            WorkshopSource browser = new FormWatcher(form.url(), pool);
+            WorkshopSource source = "http".equalsIgnoreCase(engine) ? new HttpFormFetcher(form.url(), browser) : browser;
+            StoreScraper scraper = new StoreScraper(source, parallelism, Duration.ofMinutes(5));
+            List<Long> millis = new ArrayList<>();
+            int found = 0;
+            try (MonitorTarget target = new MonitorTarget("load", form.url(), form.stores(),
+                    new WorkshopsRepository(statePath), scraper, outbox, pool, state -> { })) {
+                for (int run = 0; run < runs; run++) {
+                    long start = System.nanoTime();
+                    Map<String, Integer> added = Main.runOnce(target, form.stores());
+                    outbox.flush();
+                    millis.add((System.nanoTime() - start) / 1_000_000);
+
+                    assertEquals(added.keySet(), Set.copyOf(form.stores()), "every store is checked");
+                    int expected = run == 0 ? workshops : newPerRun;
+                    added.values().forEach(n -> assertEquals(n.intValue(), expected));
+                    found += added.values().stream().mapToInt(Integer::intValue).sum();
+                    form.nextRound();
+                }
+            }
+            assertEquals(smtp.mails.size(), runs, "one digest per run");
+
+            List<Long> sorted = new ArrayList<>(millis);
+            Collections.sort(sorted);
+            long total = millis.stream().mapToLong(Long::longValue).sum();
+            double storesPerSecond = stores * runs * 1000.0 / Math.max(1, total);
+            LOG.info("Load: {} runs of {} stores x {} workshops ({}, latency {} ms, render delay {} ms, parallelism {}):"
+                            + " {} stores/s, run p50 {} ms, p99 {} ms, max {} ms, {} new workshops, {} form requests,"
+                            + " peak RSS {} MB (JVM high water mark {} MB)",
+                    runs, stores, workshops, engine, latency.toMillis(), renderDelay.toMillis(), parallelism,
+                    String.format("%.1f", storesPerSecond), percentile(sorted, 50), percentile(sorted, 99),
+                    sorted.get(sorted.size() - 1), found, form.requests.get(), rss.peakMb(), PeakRss.jvmHighWaterMarkMb());
+        } finally {
+            BrowserSupervisor.deleteRecursively(dir);
+        }
+    }
+
+    private static long percentile(List<Long> sorted, int p) {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.size());
+        return sorted.get(Math.max(0, rank - 1));
+    }
+
+    /**
+     * Samples the resident memory of this JVM and its browsers every 50 ms.
+     */
+    private static final class PeakRss implements AutoCloseable {
+
+        private final AtomicLong peak = new AtomicLong();
+        private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rss-sampler");
+            t.setDaemon(true);
+            return t;
+        });
+
+        PeakRss() {
+            sampler.scheduleAtFixedRate(this::sample, 0, 50, TimeUnit.MILLISECONDS);
+        }
+
+        private void sample() {
+            peak.accumulateAndGet(BrowserSupervisor.rssMb(ProcessHandle.current()), Math::max);
+        }
+
+        long peakMb() {
+            sample();
+            return peak.get();
+        }
+
+        static long jvmHighWaterMarkMb() {
+            try (var lines = Files.lines(Path.of("/proc/self/status"))) {
+                return lines.filter(l -> l.startsWith("VmHWM:"))
+                        .mapToLong(l -> Long.parseLong(l.replaceAll("\\D", "")) / 1024)
+                        .findFirst()
+                        .orElse(0);
+            } catch (Exception e) {
+                return 0;
+            }
+        }
+
+        @Override
+        public void close() {
+            sampler.shutdownNow();
+        }
+    }
+}
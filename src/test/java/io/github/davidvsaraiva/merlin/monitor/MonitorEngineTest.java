@@ -0,0 +1,198 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+import static org.testng.Assert.fail;
+
+public class MonitorEngineTest {
+
+    @Test
+    public void loadsAndValidatesConfig() throws IOException {
+        Path dir = Files.createTempDirectory("monitor-config");
+        MonitorConfig config = MonitorConfig.load(write(dir, """
+                {"forms": [{"id": "merlin", "url": "https://example.com/a", "stores": ["Loulé"]}]}
+                """));
+        assertEquals(config.maxBrowsers(), 1, "defaults to one browser");
+        assertEquals(config.forms().get(0).stores(), List.of("Loulé"));
+
+        expectThrows(IllegalArgumentException.class, () -> MonitorConfig.load(write(dir, """
+                {"forms": [{"id": "a", "url": "u", "stores": ["x"]}, {"id": "a", "url": "v", "stores": ["y"]}]}
+                """)));
+        expectThrows(IllegalArgumentException.class, () -> MonitorConfig.load(write(dir, """
+                {"forms": [{"id": "../a", "url": "u", "stores": ["x"]}]}
+                """)));
+        expectThrows(IllegalArgumentException.class, () -> MonitorConfig.load(write(dir, """
+                {"forms": [{"id": "a", "url": "u", "stores": []}]}
+                """)));
+    }
+
+    @Test
+    public void reloadStartsStopsAndRestartsChangedForms() throws Exception {
+        Path dir = Files.createTempDirectory("monitor-engine");
+        Path config = write(dir, """
+                {"maxBrowsers": 2, "forms": [
+                  {"id": "a", "url": "https://example.com/a", "stores": ["Loulé"]},
+                  {"id": "b", "url": "https://example.com/b", "stores": ["Faro"]}
+                ]}
+                """);
+        Map<String, AtomicInteger> runs = new ConcurrentHashMap<>();
+        List<String> created = new CopyOnWriteArrayList<>();
+        Function<MonitorConfig.Form, MonitorTarget> targets = form -> {
+            created.add(form.id());
+            return target(form, dir);
+        };
+        MonitorEngine.Runner runner = (target, stores) -> {
+            runs.computeIfAbsent(target.id() + stores, k -> new AtomicInteger()).incrementAndGet();
+            return Map.of();
+        };
+
+        try (MonitorEngine engine = new MonitorEngine(config, 2, targets, runner, Duration.ofHours(1))) {
+            engine.start();
+            awaitRun(runs, "a[Loulé]");
+            awaitRun(runs, "b[Faro]");
+            assertEquals(engine.runningForms(), List.of("a", "b"));
+
+            write(dir, """
+                    {"maxBrowsers": 2, "forms": [
+                      {"id": "a", "url": "https://example.com/a", "stores": ["Loulé"]},
+                      {"id": "b", "url": "https://example.com/b", "stores": ["Faro", "Tavira"]},
+                      {"id": "c", "url": "https://example.com/c", "stores": ["Lagos"]}
+                    ]}
+                    """);
+            engine.reload();
+            awaitRun(runs, "b[Faro, Tavira]");
+            awaitRun(runs, "c[Lagos]");
+            assertEquals(runs.get("a[Loulé]").get(), 1, "unchanged form keeps its schedule");
+            assertEquals(created, List.of("a", "b", "b", "c"));
+
+            write(dir, "{\"forms\": []}");
+            engine.reload();
+            assertEquals(engine.runningForms(), List.of("a", "b", "c"), "an invalid config is ignored");
+
+            write(dir, """
+                    {"forms": [{"id": "c", "url": "https://example.com/c", "stores": ["Lagos"]}]}
+                    """);
+            engine.reload();
+            assertEquals(engine.runningForms(), List.of("c"));
+        }
+    }
+
+    @Test
+    public void reloadDoesNotWaitForARunInProgress() throws Exception {
+        Path dir = Files.createTempDirectory("monitor-busy");
+        Path config = write(dir, """
+                {"maxBrowsers": 2, "forms": [{"id": "a", "url": "https://example.com/a", "stores": ["Loulé"]}]}
+                """);
+        Map<String, AtomicInteger> runs = new ConcurrentHashMap<>();
+        CountDownLatch release = new CountDownLatch(1);
+        MonitorEngine.Runner runner = (target, stores) -> {
+            runs.computeIfAbsent(target.id() + stores, k -> new AtomicInteger()).incrementAndGet();
+            if (stores.equals(List.of("Loulé"))) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return Map.of();
+        };
+
+        try (MonitorEngine engine = new MonitorEngine(config, 2, form -> target(form, dir), runner, Duration.ofHours(1))) {
+            engine.start();
+            awaitRun(runs, "a[Loulé]");
+
+            write(dir, """
+                    {"maxBrowsers": 2, "forms": [{"id": "a", "url": "https://example.com/a", "stores": ["Faro"]}]}
+                    """);
+            long start = System.nanoTime();
+            engine.reload();
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2), "reload waited for the run");
+            assertEquals(engine.runningForms(), List.of("a"));
+
+            Thread.sleep(200);
+            assertFalse(runs.containsKey("a[Faro]"), "the changed form waits for its previous version to close");
+            release.countDown();
+            awaitRun(runs, "a[Faro]");
+        }
+    }
+
+    @Test
+    public void picksUpEditsToTheConfigFile() throws Exception {
+        Path dir = Files.createTempDirectory("monitor-watch");
+        Path config = write(dir, """
+                {"forms": [{"id": "a", "url": "https://example.com/a", "stores": ["Loulé"]}]}
+                """);
+        try (MonitorEngine engine = new MonitorEngine(config, 1, form -> target(form, dir),
+                (target, stores) -> Map.of(), Duration.ofHours(1))) {
+            engine.start();
+            write(dir, """
+                    {"forms": [{"id": "z", "url": "https://example.com/z", "stores": ["Loulé"]}]}
+                    """);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (!engine.runningForms().equals(List.of("z"))) {
+                if (System.nanoTime() > deadline) {
+                    fail("config change not picked up: " + engine.runningForms());
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    private static MonitorTarget target(MonitorConfig.Form form, Path dir) {
+        Path state = dir.resolve("workshops-" + form.id() + ".json");
+        WorkshopSource source = new WorkshopSource() {
+            @Override
+            public List<String> fetchWorkshopsForStore(String storeName) {
+                return List.of();
+            }
+
+            @Override
+            public Map<String, List<String>> fetchWorkshopsForStores(Collection<String> storeNames) {
+                return Map.of();
+            }
+        };
+        WebDriverPool pool = new WebDriverPool(() -> {
+            throw new AssertionError("no browser expected");
+        }, 1, Duration.ofMinutes(1), 1);
+        return new MonitorTarget(form.id(), form.url(), List.copyOf(form.stores()), new WorkshopsRepository(state),
+                new StoreScraper(source, 1, Duration.ofSeconds(1)),
+                new NotificationOutbox(dir.resolve(form.id() + ".outbox"), items -> { }, Duration.ofSeconds(1), Duration.ofSeconds(1)),
+                pool, s -> { });
+    }
+
+    private static void awaitRun(Map<String, AtomicInteger> runs, String key) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!runs.containsKey(key)) {
+            if (System.nanoTime() > deadline) {
+                fail("no run of " + key + ", only " + new ArrayList<>(runs.keySet()));
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static Path write(Path dir, String json) throws IOException {
+        Path file = dir.resolve("monitor.json");
+        Files.writeString(file, json);
+        assertTrue(Files.exists(file));
+        return file;
+    }
+}
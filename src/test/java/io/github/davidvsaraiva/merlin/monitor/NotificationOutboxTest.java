@@ -0,0 +1,89 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class NotificationOutboxTest {
+
+    private static final NotificationOutbox.Item PINTAR = new NotificationOutbox.Item("Loulé", "Como pintar", "2025-09-01T10:00:00Z");
+    private static final NotificationOutbox.Item ABAJUR = new NotificationOutbox.Item("Albufeira", "Como reciclar um abajur", "2025-09-02T10:00:00Z");
+
+    @Test
+    public void retriesAndCoalescesIntoOneDigest() throws Exception {
+        Path file = Files.createTempDirectory("outbox-retry").resolve("workshops.json.outbox");
+        AtomicInteger attempts = new AtomicInteger();
+        List<List<NotificationOutbox.Item>> delivered = new CopyOnWriteArrayList<>();
+        NotificationOutbox.Delivery flaky = items -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IOException("SMTP down");
+            }
+            delivered.add(items);
+        };
+        try (NotificationOutbox outbox = new NotificationOutbox(file, flaky, Duration.ofMillis(100), Duration.ofSeconds(1))) {
+            outbox.start();
+            outbox.enqueue(List.of(PINTAR));
+            // a later run finds more while the first notification is still failing
+            outbox.enqueue(List.of(ABAJUR, PINTAR));
+
+            awaitEmpty(outbox);
+        }
+        assertEquals(attempts.get(), 3);
+        assertEquals(delivered, List.of(List.of(PINTAR, ABAJUR)), "one digest, no duplicates");
+    }
+
+    @Test
+    public void survivesRestart() throws Exception {
+        Path file = Files.createTempDirectory("outbox-restart").resolve("workshops.json.outbox");
+        try (NotificationOutbox outbox = new NotificationOutbox(file, items -> {
+            throw new IOException("no network");
+        }, Duration.ofMinutes(10), Duration.ofMinutes(10))) {
+            outbox.enqueue(List.of(PINTAR, ABAJUR));
+            assertFalse(outbox.flush());
+        }
+
+        List<NotificationOutbox.Item> delivered = new CopyOnWriteArrayList<>();
+        try (NotificationOutbox outbox = new NotificationOutbox(file, delivered::addAll, Duration.ofMillis(10), Duration.ofMillis(10))) {
+            assertEquals(outbox.pending(), List.of(PINTAR, ABAJUR));
+            outbox.start();
+            awaitEmpty(outbox);
+
+            // already delivered: finding the same workshop again doesn't notify twice
+            outbox.enqueue(List.of(PINTAR));
+            assertTrue(outbox.pending().isEmpty());
+        }
+        assertEquals(delivered, List.of(PINTAR, ABAJUR));
+        assertTrue(new NotificationOutbox(file, items -> { }, Duration.ZERO, Duration.ZERO).pending().isEmpty());
+    }
+
+    @Test
+    public void backsOffExponentiallyUpToMax() {
+        NotificationOutbox outbox = new NotificationOutbox(Path.of("unused.outbox"), items -> { },
+                Duration.ofSeconds(30), Duration.ofMinutes(5));
+        assertEquals(outbox.backoff(1), Duration.ofSeconds(30));
+        assertEquals(outbox.backoff(2), Duration.ofSeconds(60));
+        assertEquals(outbox.backoff(4), Duration.ofSeconds(240));
+        assertEquals(outbox.backoff(5), Duration.ofMinutes(5));
+        assertEquals(outbox.backoff(64), Duration.ofMinutes(5));
+        outbox.close();
+    }
+
+    private static void awaitEmpty(NotificationOutbox outbox) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!outbox.pending().isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(outbox.pending().isEmpty(), "outbox should drain");
+    }
+}
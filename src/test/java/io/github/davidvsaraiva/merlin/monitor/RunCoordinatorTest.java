@@ -0,0 +1,159 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class RunCoordinatorTest {
+
+    private static final List<String> STORES = List.of("Loulé", "Albufeira", "Faro");
+
+    /**
+     * Records every run and blocks each one until released, in an interruptible step like a scrape.
+     */
+    private static final class BlockingRunner implements RunCoordinator.Runner {
+        final List<List<String>> runs = new CopyOnWriteArrayList<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public Map<String, Integer> run(List<String> stores, String trigger) {
+            runs.add(stores);
+            started.countDown();
+            try {
+                RunCancellation.interruptibly(() -> {
+                    release.await();
+                    return null;
+                });
+            } catch (Exception e) {
+                return Map.of();
+            }
+            return Map.of(stores.get(0), 1);
+        }
+    }
+
+    @Test
+    public void mergesRequestsIntoOneQueuedRun() throws Exception {
+        ExecutorService exec = Executors.newSingleThreadExecutor();
+        BlockingRunner runner = new BlockingRunner();
+        RunCoordinator runs = new RunCoordinator(exec, STORES, runner);
+        try {
+            CompletableFuture<RunCoordinator.Run> first = runs.trigger(List.of("Faro"));
+            assertTrue(runner.started.await(5, TimeUnit.SECONDS));
+            assertSame(runs.trigger(List.of("Faro")), first, "joins the run in progress");
+
+            CompletableFuture<RunCoordinator.Run> second = runs.trigger(List.of("Faro", "Albufeira"));
+            CompletableFuture<RunCoordinator.Run> third = runs.trigger(List.of("Loulé"));
+            assertNotSame(second, first);
+            assertSame(third, second, "merged into the queued run");
+            assertEquals(runs.status().queued(), List.of("Faro", "Albufeira", "Loulé"));
+            assertEquals(runs.status().running().stores(), List.of("Faro"));
+
+            runner.release.countDown();
+            assertEquals(first.get(5, TimeUnit.SECONDS).outcome(), "ok");
+            assertEquals(second.get(5, TimeUnit.SECONDS).stores(), STORES, "in configured order");
+            assertEquals(runner.runs.size(), 2);
+            assertEquals(runs.status().last().stores(), STORES);
+        } finally {
+            exec.shutdownNow();
+        }
+    }
+
+    @Test
+    public void cancelsTheRunInProgress() throws Exception {
+        ExecutorService exec = Executors.newSingleThreadExecutor();
+        BlockingRunner runner = new BlockingRunner();
+        RunCoordinator runs = new RunCoordinator(exec, STORES, runner);
+        try {
+            assertFalse(runs.cancel(), "nothing to cancel");
+            CompletableFuture<RunCoordinator.Run> run = runs.trigger(List.of());
+            assertTrue(runner.started.await(5, TimeUnit.SECONDS));
+
+            assertTrue(runs.cancel());
+            assertEquals(run.get(5, TimeUnit.SECONDS).outcome(), "cancelled");
+            assertEquals(runner.runs, List.of(STORES));
+        } finally {
+            exec.shutdownNow();
+        }
+    }
+
+    @Test
+    public void runPastTheScrapeIsNotInterrupted() throws Exception {
+        ExecutorService exec = Executors.newSingleThreadExecutor();
+        CountDownLatch committing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RunCoordinator runs = new RunCoordinator(exec, STORES, (stores, trigger) -> {
+            try {
+                RunCancellation.interruptibly(() -> "scraped");
+                committing.countDown();
+                // stands in for writing the state: must neither be interrupted nor stopped
+                release.await();
+            } catch (Exception e) {
+                return Map.of();
+            }
+            return Thread.currentThread().isInterrupted() ? Map.of() : Map.of(stores.get(0), 0);
+        });
+        try {
+            CompletableFuture<RunCoordinator.Run> run = runs.trigger(List.of());
+            assertTrue(committing.await(5, TimeUnit.SECONDS));
+
+            assertTrue(runs.cancel());
+            release.countDown();
+            assertEquals(run.get(5, TimeUnit.SECONDS).outcome(), "ok");
+        } finally {
+            exec.shutdownNow();
+        }
+    }
+
+    @Test
+    public void controlEndpointTriggersAndReports() throws Exception {
+        ExecutorService exec = Executors.newSingleThreadExecutor();
+        RunCoordinator runs = new RunCoordinator(exec, STORES, (stores, trigger) -> Map.of(stores.get(0), 2));
+        ObjectMapper mapper = new ObjectMapper();
+        HttpClient client = HttpClient.newHttpClient();
+        try (ControlServer control = new ControlServer(new InetSocketAddress("127.0.0.1", 0))) {
+            control.start(runs);
+            String base = "http://127.0.0.1:" + control.port();
+
+            HttpResponse<String> run = client.send(HttpRequest.newBuilder(URI.create(base + "/run?store=faro&wait=true"))
+                    .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(run.statusCode(), 200);
+            JsonNode finished = mapper.readTree(run.body());
+            assertEquals(finished.path("outcome").asText(), "ok");
+            assertEquals(finished.path("newWorkshops").path("Faro").asInt(), 2);
+
+            HttpResponse<String> status = client.send(HttpRequest.newBuilder(URI.create(base + "/status")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(mapper.readTree(status.body()).path("last").path("stores").get(0).asText(), "Faro");
+
+            HttpResponse<String> unknown = client.send(HttpRequest.newBuilder(URI.create(base + "/run?store=Lagos"))
+                    .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(unknown.statusCode(), 400);
+            HttpResponse<Void> get = client.send(HttpRequest.newBuilder(URI.create(base + "/cancel")).build(),
+                    HttpResponse.BodyHandlers.discarding());
+            assertEquals(get.statusCode(), 405);
+        } finally {
+            exec.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.slf4j.MDC;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class RunMetricsTest {
+
+    @AfterMethod
+    public void clearMdc() {
+        MDC.clear();
+    }
+
+    @Test
+    public void exposesPhasesAndCountersInPrometheusFormat() {
+        RunMetrics metrics = new RunMetrics();
+        MDC.put("form", "merlin");
+        for (int i = 0; i < 3; i++) {
+            try (var phase = metrics.phase("page_load")) {
+                assertTrue(phase != null);
+            }
+        }
+        metrics.storeChecked("Loulé", 12, 2, false);
+        metrics.storeChecked("Albufeira", 0, 0, true);
+        metrics.count("dropdown_label_fallbacks", null, 1);
+        metrics.record("extraction", Duration.ofMillis(4));
+
+        assertEquals(metrics.timerCount("page_load"), 3);
+        assertEquals(metrics.timerCount("extraction"), 1);
+        assertEquals(metrics.counter("workshops_scraped", "Loulé"), 12);
+        assertEquals(metrics.counter("store_failures", null), 1);
+
+        String text = metrics.prometheus();
+        assertTrue(text.contains("# TYPE merlin_phase_seconds summary\n"), text);
+        assertTrue(text.contains("merlin_phase_seconds_count{phase=\"page_load\",form=\"merlin\"} 3\n"), text);
+        assertTrue(text.contains("merlin_workshops_new_total{form=\"merlin\",store=\"Loulé\"} 2\n"), text);
+        assertTrue(text.contains("merlin_store_failures_total{form=\"merlin\",store=\"Albufeira\"} 1\n"), text);
+        assertTrue(text.contains("merlin_dropdown_label_fallbacks_total{form=\"merlin\"} 1\n"), text);
+        for (String line : text.split("\n")) {
+            assertTrue(line.startsWith("#") || line.matches("merlin_\\w+(\\{[^}]*})? [0-9.E-]+"), line);
+        }
+    }
+
+    @Test
+    public void servesMetricsOverHttp() throws Exception {
+        RunMetrics metrics = new RunMetrics();
+        metrics.count("runs", null, 1);
+        try (MetricsServer server = new MetricsServer(new InetSocketAddress("127.0.0.1", 0), metrics)) {
+            server.start();
+            HttpResponse<String> response = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.port() + "/metrics")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(response.statusCode(), 200);
+            assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/plain; version=0.0.4"));
+            assertTrue(response.body().contains("merlin_runs_total 1\n"), response.body());
+        }
+    }
+
+    @Test
+    public void emitsJfrEventsTaggedWithRunId() throws Exception {
+        RunMetrics metrics = new RunMetrics();
+        Path dump = Files.createTempFile("run-metrics", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("merlin.Phase");
+            recording.enable("merlin.StoreCheck");
+            recording.start();
+            MDC.put("runId", "abcd1234");
+            try (var phase = metrics.phase("store_select", "Loulé")) {
+                Thread.sleep(5);
+            }
+            metrics.storeChecked("Loulé", 4, 1, false);
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        RecordedEvent phase = events.stream().filter(e -> e.getEventType().getName().equals("merlin.Phase")).findFirst().orElseThrow();
+        assertEquals(phase.getString("runId"), "abcd1234");
+        assertEquals(phase.getString("phase"), "store_select");
+        assertEquals(phase.getString("store"), "Loulé");
+        assertTrue(phase.getDuration().toMillis() >= 5);
+        RecordedEvent check = events.stream().filter(e -> e.getEventType().getName().equals("merlin.StoreCheck")).findFirst().orElseThrow();
+        assertEquals(check.getString("runId"), "abcd1234");
+        assertEquals(check.getInt("newWorkshops"), 1);
+    }
+}
@@ -0,0 +1,148 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal in-process SMTP server: EHLO, AUTH PLAIN/LOGIN (any credentials), MAIL, RCPT, DATA, RSET, QUIT.
+ * Records connections, logins and accepted messages; recipients in {@code rejected} get a 550 and those in
+ * {@code deferred} a 450.
+ */
+class SmtpStub implements AutoCloseable {
+
+    record Mail(String from, List<String> recipients, String data) {
+    }
+
+    final AtomicInteger connections = new AtomicInteger();
+    final AtomicInteger logins = new AtomicInteger();
+    final List<Mail> mails = new CopyOnWriteArrayList<>();
+
+    private final Set<String> rejected;
+    private final Set<String> deferred;
+    private final ServerSocket server;
+    private final ExecutorService workers = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "smtp-stub");
+        t.setDaemon(true);
+        return t;
+    });
+
+    SmtpStub(Set<String> rejected) throws IOException {
+        this(rejected, Set.of());
+    }
+
+    SmtpStub(Set<String> rejected, Set<String> deferred) throws IOException {
+        this.rejected = rejected;
+        this.deferred = deferred;
+        this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        workers.execute(this::acceptLoop);
+    }
+
+    int port() {
+        return server.getLocalPort();
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                connections.incrementAndGet();
+                workers.execute(() -> serve(socket));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII))) {
+            OutputStream out = socket.getOutputStream();
+            reply(out, "220 stub ESMTP");
+            String from = null;
+            List<String> recipients = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.toUpperCase(Locale.ROOT);
+                if (command.startsWith("EHLO") || command.startsWith("HELO")) {
+                    reply(out, "250-stub\r\n250-AUTH PLAIN LOGIN\r\n250 OK");
+                } else if (command.startsWith("AUTH LOGIN")) {
+                    reply(out, "334 VXNlcm5hbWU6");
+                    in.readLine();
+                    reply(out, "334 UGFzc3dvcmQ6");
+                    in.readLine();
+                    logins.incrementAndGet();
+                    reply(out, "235 OK");
+                } else if (command.startsWith("AUTH PLAIN")) {
+                    if (line.trim().length() <= "AUTH PLAIN".length()) {
+                        reply(out, "334 ");
+                        in.readLine();
+                    }
+                    logins.incrementAndGet();
+                    reply(out, "235 OK");
+                } else if (command.startsWith("MAIL FROM:")) {
+                    from = address(line);
+                    recipients = new ArrayList<>();
+                    reply(out, "250 OK");
+                } else if (command.startsWith("RCPT TO:")) {
+                    String to = address(line);
+                    if (rejected.contains(to)) {
+                        reply(out, "550 No such user");
+                    } else if (deferred.contains(to)) {
+                        reply(out, "450 Mailbox busy");
+                    } else {
+                        recipients.add(to);
+                        reply(out, "250 OK");
+                    }
+                } else if (command.equals("DATA")) {
+                    reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                    StringBuilder data = new StringBuilder();
+                    String dataLine;
+                    while ((dataLine = in.readLine()) != null && !dataLine.equals(".")) {
+                        data.append(dataLine).append('\n');
+                    }
+                    mails.add(new Mail(from, List.copyOf(recipients), data.toString()));
+                    reply(out, "250 OK");
+                } else if (command.equals("QUIT")) {
+                    reply(out, "221 Bye");
+                    return;
+                } else {
+                    // RSET, NOOP and anything else
+                    reply(out, "250 OK");
+                }
+            }
+        } catch (IOException e) {
+            // client went away
+        }
+    }
+
+    private static String address(String line) {
+        int start = line.indexOf('<');
+        int end = line.indexOf('>');
+        return start >= 0 && end > start ? line.substring(start + 1, end) : line.substring(line.indexOf(':') + 1).trim();
+    }
+
+    private static void reply(OutputStream out, String text) throws IOException {
+        out.write((text + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        workers.shutdownNow();
+    }
+}
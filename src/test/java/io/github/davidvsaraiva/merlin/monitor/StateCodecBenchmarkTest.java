@@ -0,0 +1,72 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Compares snapshot size and save/load time of the JSON and Smile codecs on synthetic states of 10k and 100k
+ * workshops spread over 20 stores, each run finding a handful of workshops.
+ */
+@Test(groups = "benchmark")
+public class StateCodecBenchmarkTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StateCodecBenchmarkTest.class);
+
+    private static final int STORES = 20;
+    private static final int PER_RUN = 5;
+
+    @DataProvider
+    public Object[][] sizes() {
+        return new Object[][]{{10_000}, {100_000}};
+    }
+
+    @Test(dataProvider = "sizes")
+    public void smileIsSmallerThanJson(int entries) throws IOException {
+        WorkshopState state = syntheticState(entries);
+        Path dir = Files.createTempDirectory("codec-bench");
+
+        Result json = measure(dir.resolve("state.json"), StateCodec.JSON, state, entries);
+        Result smile = measure(dir.resolve("state.sml"), StateCodec.SMILE, state, entries);
+        LOG.info("{} entries | json: {} bytes, save {} ms, load {} ms | smile: {} bytes, save {} ms, load {} ms",
+                entries, json.bytes, json.saveMillis, json.loadMillis, smile.bytes, smile.saveMillis, smile.loadMillis);
+
+        assertTrue(smile.bytes * 2 < json.bytes, "smile should be well under half the JSON size");
+    }
+
+    private static Result measure(Path path, StateCodec codec, WorkshopState state, int entries) throws IOException {
+        long start = System.nanoTime();
+        new WorkshopsRepository(path, false, 0, 0, codec).save(state);
+        long saved = System.nanoTime();
+        WorkshopState loaded = new WorkshopsRepository(path, false, 0, 0, codec).loadOrCreate();
+        long loadedAt = System.nanoTime();
+
+        assertEquals(loaded.stores().values().stream().mapToInt(s -> s.getWorkshops().size()).sum(), entries);
+        return new Result(Files.size(path), (saved - start) / 1_000_000, (loadedAt - saved) / 1_000_000);
+    }
+
+    private static WorkshopState syntheticState(int entries) {
+        Map<String, WorkshopsRepository.StoreData> stores = new LinkedHashMap<>();
+        for (int i = 0; i < entries; i++) {
+            String store = "Loja " + (i % STORES);
+            String run = "2025-09-01T10:00:00.%06dZ".formatted(i / (STORES * PER_RUN));
+            String title = "Como aplicar papel de parede %d. Dia %02d/%02d, %dh".formatted(i, 1 + i % 28, 1 + i % 12, 9 + i % 9);
+            stores.computeIfAbsent(store, s -> new WorkshopsRepository.StoreData(new LinkedHashMap<>(), run))
+                    .getWorkshops().put(title, new WorkshopEntry(title, run));
+        }
+        return new WorkshopState(stores, "2025-09-02T10:00:00Z");
+    }
+
+    private record Result(long bytes, long saveMillis, long loadMillis) {
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class StateCodecTest {
+
+    @Test
+    public void detectsFormatOnLoad() throws IOException {
+        Path dir = Files.createTempDirectory("codec-detect");
+        Path path = dir.resolve("workshops.json");
+        try (WorkshopsRepository json = new WorkshopsRepository(path, false, 0, 0, StateCodec.JSON)) {
+            json.save(sampleState());
+        }
+        assertEquals(StateCodec.detect(path), StateCodec.JSON);
+
+        // a binary repository reads the old JSON file and converts it on the next save
+        try (WorkshopsRepository smile = new WorkshopsRepository(path, false, 0, 0, StateCodec.SMILE)) {
+            WorkshopState state = smile.loadOrCreate();
+            assertEquals(state.stores().get("Loulé").getWorkshops().size(), 2);
+            smile.save(state);
+        }
+        assertEquals(StateCodec.detect(path), StateCodec.SMILE);
+
+        WorkshopState reread = new WorkshopsRepository(path).loadOrCreate();
+        assertEquals(reread.lastUpdated(), "2025-09-02T10:00:00Z");
+        assertEquals(reread.stores().get("Albufeira").getLastChecked(), "2025-09-02T10:00:00Z");
+        assertEquals(reread.stores().get("Loulé").getWorkshops().get("Como pintar. Dia 01/10, 10h").firstSeen(),
+                "2025-09-02T10:00:00Z");
+    }
+
+    @Test
+    public void exportsAndImportsJson() throws IOException {
+        Path dir = Files.createTempDirectory("codec-export");
+        Path path = dir.resolve("workshops.json");
+        Path exported = dir.resolve("export.json");
+        try (WorkshopsRepository smile = new WorkshopsRepository(path, false, 0, 0, StateCodec.SMILE)) {
+            smile.save(sampleState());
+            smile.exportTo(exported, StateCodec.JSON);
+        }
+        assertTrue(Files.readString(exported).contains("\n  \"stores\" : {"), "export is pretty printed");
+
+        Path other = dir.resolve("other.json");
+        try (WorkshopsRepository smile = new WorkshopsRepository(other, false, 0, 0, StateCodec.SMILE)) {
+            smile.importFrom(exported);
+        }
+        assertEquals(StateCodec.detect(other), StateCodec.SMILE);
+        assertEquals(new WorkshopsRepository(other).loadOrCreate().stores().get("Loulé").getWorkshops().keySet(),
+                sampleState().stores().get("Loulé").getWorkshops().keySet());
+    }
+
+    @Test
+    public void sharesTimestampsAndTitlesAfterLoad() throws IOException {
+        Path path = Files.createTempDirectory("codec-intern").resolve("workshops.json");
+        new WorkshopsRepository(path).save(sampleState());
+
+        Map<String, WorkshopEntry> loule = new WorkshopsRepository(path).loadOrCreate().stores().get("Loulé").getWorkshops();
+        WorkshopEntry first = loule.get("Como aplicar papel de parede. Dia 27/09, 10h");
+        WorkshopEntry second = loule.get("Como pintar. Dia 01/10, 10h");
+        assertSame(first.firstSeen(), second.firstSeen());
+        String key = loule.keySet().iterator().next();
+        assertSame(loule.get(key).title(), key);
+    }
+
+    private static WorkshopState sampleState() {
+        String run = "2025-09-02T10:00:00Z";
+        Map<String, WorkshopsRepository.StoreData> stores = new LinkedHashMap<>();
+        Map<String, WorkshopEntry> loule = new LinkedHashMap<>();
+        loule.put("Como aplicar papel de parede. Dia 27/09, 10h",
+                new WorkshopEntry("Como aplicar papel de parede. Dia 27/09, 10h", new String(run)));
+        loule.put("Como pintar. Dia 01/10, 10h", new WorkshopEntry("Como pintar. Dia 01/10, 10h", new String(run)));
+        stores.put("Loulé", new WorkshopsRepository.StoreData(loule, run));
+        Map<String, WorkshopEntry> albufeira = new LinkedHashMap<>();
+        albufeira.put("Iniciação à bricolage", new WorkshopEntry("Iniciação à bricolage", run));
+        stores.put("Albufeira", new WorkshopsRepository.StoreData(albufeira, run));
+        return new WorkshopState(stores, run);
+    }
+}
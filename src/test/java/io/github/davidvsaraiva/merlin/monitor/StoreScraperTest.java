@@ -0,0 +1,149 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.openqa.selenium.WebDriver;
+import org.slf4j.MDC;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class StoreScraperTest {
+
+    @Test
+    public void singleSlotReadsEveryStoreInOneCall() {
+        FakeSource source = new FakeSource(Duration.ZERO);
+        try (StoreScraper scraper = new StoreScraper(source, 1, Duration.ofSeconds(5))) {
+            Map<String, List<String>> scraped = scraper.scrape(List.of("A", "B"));
+            assertEquals(List.copyOf(scraped.keySet()), List.of("A", "B"));
+            assertEquals(source.batchCalls.get(), 1);
+        }
+    }
+
+    @Test
+    public void keepsOtherStoresWhenOneFailsOrTimesOut() {
+        FakeSource source = new FakeSource(Duration.ofMillis(50));
+        source.failing.put("broken", true);
+        source.hanging.put("slow", true);
+        try (StoreScraper scraper = new StoreScraper(source, 2, Duration.ofMillis(500))) {
+            long start = System.nanoTime();
+            Map<String, List<String>> scraped = scraper.scrape(List.of("A", "broken", "slow", "B"));
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            assertEquals(List.copyOf(scraped.keySet()), List.of("A", "B"), "results keep the requested order");
+            assertEquals(scraped.get("A"), List.of("A workshop"));
+            assertTrue(elapsedMillis < 5_000, "the hanging store must be cut at its timeout");
+        }
+    }
+
+    @Test
+    public void boundsConcurrencyAndPropagatesMdc() {
+        FakeSource source = new FakeSource(Duration.ofMillis(100));
+        MDC.put("runId", "run-42");
+        try (StoreScraper scraper = new StoreScraper(source, 2, Duration.ofSeconds(5))) {
+            scraper.scrape(List.of("A", "B", "C", "D", "E"));
+        } finally {
+            MDC.clear();
+        }
+        assertTrue(source.maxConcurrent.get() <= 2, "at most two stores at a time");
+        assertEquals(source.runIds.get("C"), "run-42");
+        assertEquals(source.storeTags.get("C"), "[C]");
+    }
+
+    @Test
+    public void cancellingAParallelScrapeReturnsTheWorkersLeases() throws Exception {
+        WebDriver driver = (WebDriver) Proxy.newProxyInstance(
+                WebDriver.class.getClassLoader(), new Class<?>[]{WebDriver.class}, (p, method, args) -> null);
+        try (WebDriverPool pool = new WebDriverPool(() -> driver, 2, Duration.ofMinutes(5), 10)) {
+            CountDownLatch started = new CountDownLatch(2);
+            WorkshopSource leasing = new FakeSource(Duration.ZERO) {
+                @Override
+                public List<String> fetchWorkshopsForStore(String storeName) {
+                    try (WebDriverPool.Lease lease = pool.acquire()) {
+                        started.countDown();
+                        Thread.sleep(60_000);
+                        return List.of();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            try (StoreScraper scraper = new StoreScraper(leasing, 2, Duration.ofMinutes(5))) {
+                AtomicReference<RunCancellation> cancellation = new AtomicReference<>();
+                CompletableFuture<Object> run = CompletableFuture.supplyAsync(() -> {
+                    cancellation.set(RunCancellation.begin());
+                    try {
+                        return RunCancellation.interruptibly(() -> scraper.scrape(List.of("A", "B", "C")));
+                    } catch (Exception e) {
+                        return e;
+                    } finally {
+                        cancellation.get().end();
+                    }
+                });
+                assertTrue(started.await(5, TimeUnit.SECONDS), "both slots must be scraping");
+                cancellation.get().cancel();
+
+                assertTrue(run.get(5, TimeUnit.SECONDS) instanceof CancellationException);
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (pool.stats().leased() > 0 && System.nanoTime() < deadline) {
+                    Thread.sleep(10);
+                }
+                assertEquals(pool.stats().leased(), 0, "the workers must give their browsers back");
+            }
+        }
+    }
+
+    private static class FakeSource implements WorkshopSource {
+        private final Duration latency;
+        private final Map<String, Boolean> failing = new ConcurrentHashMap<>();
+        private final Map<String, Boolean> hanging = new ConcurrentHashMap<>();
+        private final Map<String, String> runIds = new ConcurrentHashMap<>();
+        private final Map<String, String> storeTags = new ConcurrentHashMap<>();
+        private final AtomicInteger batchCalls = new AtomicInteger();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+        private FakeSource(Duration latency) {
+            this.latency = latency;
+        }
+
+        @Override
+        public List<String> fetchWorkshopsForStore(String storeName) {
+            maxConcurrent.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                runIds.put(storeName, String.valueOf(MDC.get("runId")));
+                storeTags.put(storeName, String.valueOf(MDC.get("store")));
+                Thread.sleep(hanging.containsKey(storeName) ? 60_000 : latency.toMillis());
+                if (failing.containsKey(storeName)) {
+                    throw new IllegalStateException("boom");
+                }
+                return List.of(storeName + " workshop");
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+
+        @Override
+        public Map<String, List<String>> fetchWorkshopsForStores(Collection<String> storeNames) {
+            batchCalls.incrementAndGet();
+            Map<String, List<String>> result = new LinkedHashMap<>();
+            storeNames.forEach(s -> result.put(s, List.of(s + " workshop")));
+            return result;
+        }
+    }
+}
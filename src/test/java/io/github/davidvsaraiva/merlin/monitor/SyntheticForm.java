@@ -0,0 +1,143 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process stand-in for the Qualtrics form: a {@code QR~QID18} store dropdown and, per store, a question block
+ * with a {@code ChoiceStructure} list of workshops titled like the real ones ({@code Workshop 12 da Loja 003.
+ * Dia 13/01, 10h.}).
+ * <p>
+ * Every response waits {@code latency} first. With a {@code renderDelay} the lists are not in the markup: a
+ * script renders the selected store's list that long after the selection, like the real form does, so only a
+ * browser can read them. Each {@link #nextRound()} lists {@code newPerRound} new workshops per store and drops
+ * as many of the oldest ones.
+ */
+class SyntheticForm implements AutoCloseable {
+
+    final AtomicInteger requests = new AtomicInteger();
+
+    private final List<String> stores = new ArrayList<>();
+    private final int workshopsPerStore;
+    private final int newPerRound;
+    private final Duration latency;
+    private final Duration renderDelay;
+    private final HttpServer server;
+    private final ExecutorService workers = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "synthetic-form");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile int round;
+
+    SyntheticForm(int storeCount, int workshopsPerStore, int newPerRound, Duration latency, Duration renderDelay)
+            throws IOException {
+        for (int i = 1; i <= storeCount; i++) {
+            // fixed width, so no store name is contained in another one
+            stores.add(String.format("Loja %03d", i));
+        }
+        this.workshopsPerStore = workshopsPerStore;
+        this.newPerRound = newPerRound;
+        this.latency = latency;
+        this.renderDelay = renderDelay;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(workers);
+        server.createContext("/form", this::serve);
+        server.start();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/form";
+    }
+
+    List<String> stores() {
+        return List.copyOf(stores);
+    }
+
+    void nextRound() {
+        round++;
+    }
+
+    /**
+     * The workshops the store lists in the current round.
+     */
+    List<String> workshops(String store) {
+        List<String> titles = new ArrayList<>(workshopsPerStore);
+        int first = round * newPerRound;
+        for (int n = first; n < first + workshopsPerStore; n++) {
+            titles.add(String.format("Workshop %d da %s. Dia %02d/%02d, %dh.", n, store, 1 + n % 28, 1 + (n / 28) % 12,
+                    9 + n % 10));
+        }
+        return titles;
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            Thread.sleep(latency.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] page = page().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(200, page.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(page);
+        }
+    }
+
+    private String page() throws JsonProcessingException {
+        StringBuilder html = new StringBuilder("<html><head><title>Synthetic form</title></head><body><form>\n");
+        html.append("<label for=\"QR~QID18\">Selecione a sua loja</label><select id=\"QR~QID18\"><option></option>");
+        stores.forEach(store -> html.append("<option>").append(store).append("</option>"));
+        html.append("</select>\n<div id=\"questions\">\n");
+        if (renderDelay.isZero()) {
+            stores.forEach(store -> html.append(question(store, workshops(store))));
+            html.append("</div>\n");
+        } else {
+            Map<String, String> blocks = new LinkedHashMap<>();
+            stores.forEach(store -> blocks.put(store, question(store, workshops(store))));
+            html.append("</div>\n<script>\n")
+                    .append("const blocks = ").append(new ObjectMapper().writeValueAsString(blocks)).append(";\n")
+                    .append("const select = document.getElementById('QR~QID18');\n")
+                    .append("select.addEventListener('change', () => setTimeout(() => {\n")
+                    .append("  document.getElementById('questions').innerHTML = blocks[select.value] || '';\n")
+                    .append("}, ").append(renderDelay.toMillis()).append("));\n")
+                    .append("</script>\n");
+        }
+        return html.append("</form></body></html>\n").toString();
+    }
+
+    private static String question(String store, List<String> titles) {
+        StringBuilder block = new StringBuilder("<div class=\"QuestionOuter\"><div class=\"QuestionText\">")
+                .append("Em que workshop quer participar na loja de <b>").append(store).append("</b>?</div>")
+                .append("<ul class=\"ChoiceStructure\">");
+        for (String title : titles) {
+            block.append("<li class=\"Selection\"><span class=\"LabelWrapper\"><label>").append(title)
+                    .append("</label></span></li>");
+        }
+        return block.append("</ul></div>\n").toString();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,166 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.openqa.selenium.NoSuchSessionException;
+import org.openqa.selenium.WebDriver;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class WebDriverPoolTest {
+
+    private final List<FakeDriver> created = new ArrayList<>();
+
+    @BeforeMethod
+    public void reset() {
+        created.clear();
+    }
+
+    @Test
+    public void reusesSessionAcrossLeases() throws Exception {
+        try (WebDriverPool pool = new WebDriverPool(this::newDriver, 1, Duration.ofMinutes(5), 10)) {
+            WebDriver first;
+            try (WebDriverPool.Lease lease = pool.acquire()) {
+                first = lease.driver();
+            }
+            try (WebDriverPool.Lease lease = pool.acquire()) {
+                assertSame(lease.driver(), first);
+            }
+            WebDriverPool.Stats stats = pool.stats();
+            assertEquals(stats.misses(), 1);
+            assertEquals(stats.hits(), 1);
+            assertEquals(stats.idle(), 1);
+        }
+        assertTrue(created.get(0).quit.get(), "close() must quit idle sessions");
+    }
+
+    @Test
+    public void recyclesAfterMaxUses() throws Exception {
+        try (WebDriverPool pool = new WebDriverPool(this::newDriver, 1, Duration.ofMinutes(5), 2)) {
+            for (int i = 0; i < 3; i++) {
+                pool.acquire().close();
+            }
+            assertEquals(created.size(), 2);
+            assertTrue(created.get(0).quit.get());
+            assertEquals(pool.stats().recycles(), 1);
+        }
+    }
+
+    @Test
+    public void replacesUnhealthyAndInvalidatedSessions() throws Exception {
+        try (WebDriverPool pool = new WebDriverPool(this::newDriver, 1, Duration.ofMinutes(5), 10)) {
+            pool.acquire().close();
+            created.get(0).dead.set(true);
+            WebDriver second;
+            try (WebDriverPool.Lease lease = pool.acquire()) {
+                second = lease.driver();
+                assertNotSame(second, created.get(0));
+                lease.invalidate();
+            }
+            assertTrue(created.get(1).quit.get());
+            assertEquals(pool.stats().idle(), 0);
+            assertEquals(pool.stats().misses(), 2);
+        }
+    }
+
+    @Test
+    public void evictsIdleSessions() throws Exception {
+        try (WebDriverPool pool = new WebDriverPool(this::newDriver, 2, Duration.ZERO, 10)) {
+            pool.acquire().close();
+            pool.evictExpired();
+            assertTrue(created.get(0).quit.get());
+            assertEquals(pool.stats().evictions(), 1);
+            assertEquals(pool.stats().idle(), 0);
+        }
+    }
+
+    @Test
+    public void boundsConcurrentLeases() throws Exception {
+        try (WebDriverPool pool = new WebDriverPool(this::newDriver, 1, Duration.ofMinutes(5), 10)) {
+            WebDriverPool.Lease held = pool.acquire();
+            Thread waiter = new Thread(() -> {
+                try {
+                    pool.acquire().close();
+                } catch (InterruptedException ignored) {
+                }
+            });
+            waiter.start();
+            waiter.join(200);
+            assertTrue(waiter.isAlive(), "second lease must wait for the first one");
+            assertEquals(pool.stats().leased(), 1);
+            held.close();
+            waiter.join(2000);
+            assertFalse(waiter.isAlive());
+            assertEquals(created.size(), 1);
+        }
+    }
+
+    @Test
+    public void sessionReturnedWhileClosingIsQuit() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            created.clear();
+            WebDriverPool pool = new WebDriverPool(this::newDriver, 1, Duration.ofMinutes(5), 10);
+            WebDriverPool.Lease lease = pool.acquire();
+            CountDownLatch go = new CountDownLatch(1);
+            Thread closer = new Thread(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException ignored) {
+                }
+                pool.close();
+            });
+            closer.start();
+            go.countDown();
+            lease.close();
+            closer.join();
+            assertTrue(created.get(0).quit.get(), "no session may outlive the pool");
+            assertEquals(pool.stats().idle(), 0);
+        }
+    }
+
+    private WebDriver newDriver() {
+        FakeDriver fake = new FakeDriver();
+        created.add(fake);
+        return fake.proxy;
+    }
+
+    private static final class FakeDriver {
+        private final AtomicBoolean quit = new AtomicBoolean();
+        private final AtomicBoolean dead = new AtomicBoolean();
+        private final WebDriver proxy = (WebDriver) Proxy.newProxyInstance(
+                WebDriver.class.getClassLoader(), new Class<?>[]{WebDriver.class}, (p, method, args) -> {
+                    switch (method.getName()) {
+                        case "quit" -> quit.set(true);
+                        case "getWindowHandle" -> {
+                            if (dead.get() || quit.get()) {
+                                throw new NoSuchSessionException("gone");
+                            }
+                            return "window";
+                        }
+                        case "hashCode" -> {
+                            return System.identityHashCode(p);
+                        }
+                        case "equals" -> {
+                            return p == args[0];
+                        }
+                        case "toString" -> {
+                            return "FakeDriver";
+                        }
+                        default -> {
+                        }
+                    }
+                    return null;
+                });
+    }
+}
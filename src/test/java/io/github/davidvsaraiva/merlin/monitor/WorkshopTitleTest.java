@@ -0,0 +1,75 @@
+package io.github.davidvsaraiva.merlin.monitor;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class WorkshopTitleTest {
+
+    private static final LocalDate SEPTEMBER = LocalDate.of(2025, 9, 1);
+
+    @Test
+    public void splitsNameDateAndTime() {
+        assertEquals(WorkshopTitle.parse("Como aplicar papel de parede. Dia 27/09, 10h.", SEPTEMBER),
+                new WorkshopTitle("Como aplicar papel de parede", LocalDate.of(2025, 9, 27), LocalTime.of(10, 0)));
+        assertEquals(WorkshopTitle.parse("Como regularizar e colar cerâmica em parede e pavimento. Dia 06/09, 10h30", SEPTEMBER),
+                new WorkshopTitle("Como regularizar e colar cerâmica em parede e pavimento", LocalDate.of(2025, 9, 6),
+                        LocalTime.of(10, 30)));
+        assertEquals(WorkshopTitle.parse("Iniciação à bricolage. Dia 3/10", SEPTEMBER),
+                new WorkshopTitle("Iniciação à bricolage", LocalDate.of(2025, 10, 3), null));
+    }
+
+    @Test
+    public void keepsUnusualTitlesWhole() {
+        assertEquals(WorkshopTitle.parse("Iniciação à bricolage.", SEPTEMBER), new WorkshopTitle("Iniciação à bricolage", null, null));
+        assertEquals(WorkshopTitle.parse("Como pintar. Dia 31/02, 10h", SEPTEMBER), new WorkshopTitle("Como pintar. Dia 31/02, 10h", null, null));
+    }
+
+    @Test
+    public void datesEarlyInTheYearListedLateInTheYearAreNextYears() {
+        LocalDate december = LocalDate.of(2025, 12, 10);
+        assertEquals(WorkshopTitle.parse("Como pintar. Dia 10/01, 10h", december).date(), LocalDate.of(2026, 1, 10));
+        assertEquals(WorkshopTitle.parse("Como pintar. Dia 01/12, 10h", december).date(), LocalDate.of(2025, 12, 1));
+    }
+
+    @Test
+    public void keyIgnoresAccentsCaseSpacingAndPunctuation() {
+        String key = WorkshopTitle.key("Iniciação à bricolage. Dia 03/10, 10h.");
+        assertEquals(WorkshopTitle.key("  iniciacao a  BRICOLAGE. Dia 03/10,10h"), key);
+        assertNotEquals(WorkshopTitle.key("Iniciação à bricolage. Dia 04/10, 10h."), key);
+    }
+
+    @Test
+    public void respelledTitleIsTheSameWorkshopAndMissingOnesAreMarkedRemoved() {
+        WorkshopsRepository.StoreData store = new WorkshopsRepository.StoreData(new LinkedHashMap<>(), null);
+        Main.addNewTitles(store, List.of("Iniciação à bricolage. Dia 03/10, 10h.", "Como pintar. Dia 01/10, 10h"),
+                "2025-09-01T10:00:00Z");
+        store.setLastChecked("2025-09-01T10:00:00Z");
+
+        List<WorkshopEntry> added = Main.addNewTitles(store, List.of("Iniciacao a bricolage. Dia 03/10, 10h"),
+                "2025-09-02T10:00:00Z");
+        assertTrue(added.isEmpty());
+        assertEquals(store.getWorkshops().size(), 2);
+        WorkshopEntry gone = store.getWorkshops().get("Como pintar. Dia 01/10, 10h");
+        assertFalse(gone.listed());
+        assertEquals(gone.lastSeen(), "2025-09-01T10:00:00Z");
+        assertEquals(gone.removedAt(), "2025-09-02T10:00:00Z");
+        assertEquals(gone.date(), "2025-10-01");
+        store.setLastChecked("2025-09-02T10:00:00Z");
+
+        // seats freed up again
+        Main.addNewTitles(store, List.of("Iniciação à bricolage. Dia 03/10, 10h.", "Como pintar. Dia 01/10, 10h"),
+                "2025-09-03T10:00:00Z");
+        assertTrue(store.getWorkshops().get("Como pintar. Dia 01/10, 10h").listed());
+        assertNull(store.getWorkshops().get("Como pintar. Dia 01/10, 10h").lastSeen());
+    }
+}
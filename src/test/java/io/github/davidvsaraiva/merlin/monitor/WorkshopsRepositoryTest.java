@@ -1,13 +1,33 @@
 package io.github.davidvsaraiva.merlin.monitor;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.testng.annotations.Test;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
 
 public class WorkshopsRepositoryTest {
 
@@ -21,4 +41,283 @@ public class WorkshopsRepositoryTest {
         assertEquals(workshopState.stores().size(), 2);
         assertEquals(workshopState.stores().get("Loulé").getWorkshops().size(), 1);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void journalAppendsChangesInsteadOfRewritingSnapshot() throws IOException {
+        Path path = Files.createTempDirectory("repo-journal").resolve("workshops.json");
+        Path journal = path.resolveSibling("workshops.json.journal");
+        try (WorkshopsRepository repository = new WorkshopsRepository(path, true, 1 << 20, 1000)) {
+            WorkshopState state = repository.loadOrCreate();
+            addWorkshop(state, "Loulé", "Como aplicar papel de parede. Dia 27/09, 10h");
+            repository.save(new WorkshopState(state.stores(), "2025-09-01T10:00:00Z"));
+            byte[] snapshot = Files.readAllBytes(path);
+
+            // a run that finds nothing new only records the check
+            state.stores().get("Loulé").setLastChecked("2025-09-02T10:00:00Z");
+            repository.save(new WorkshopState(state.stores(), "2025-09-02T10:00:00Z"));
+            assertEquals(Files.readAllBytes(path), snapshot, "snapshot must not be rewritten");
+            assertEquals(Files.readAllLines(journal).size(), 2, "one lastChecked and one lastUpdated record");
+
+            addWorkshop(state, "Loulé", "Como pintar. Dia 01/10, 10h");
+            repository.save(new WorkshopState(state.stores(), "2025-09-03T10:00:00Z"));
+        }
+
+        try (WorkshopsRepository reopened = new WorkshopsRepository(path, true, 1 << 20, 1000)) {
+            WorkshopState recovered = reopened.loadOrCreate();
+            WorkshopsRepository.StoreData loule = recovered.stores().get("Loulé");
+            assertEquals(loule.getWorkshops().size(), 2);
+            assertTrue(loule.getWorkshops().containsKey("Como pintar. Dia 01/10, 10h"));
+            assertEquals(loule.getLastChecked(), "2025-09-02T10:00:00Z");
+            assertEquals(recovered.lastUpdated(), "2025-09-03T10:00:00Z");
+        }
+    }
+
+    @Test
+    public void recoversFromTornJournalRecord() throws IOException {
+        Path path = Files.createTempDirectory("repo-torn").resolve("workshops.json");
+        Path journal = path.resolveSibling("workshops.json.journal");
+        try (WorkshopsRepository repository = new WorkshopsRepository(path, true, 1 << 20, 1000)) {
+            WorkshopState state = repository.loadOrCreate();
+            repository.save(state);
+            addWorkshop(state, "Albufeira", "Iniciação à bricolage");
+            repository.save(state);
+        }
+        // power cut in the middle of the next append
+        Files.writeString(journal, "{\"op\":\"add\",\"store\":\"Albu", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        try (WorkshopsRepository reopened = new WorkshopsRepository(path, true, 1 << 20, 1000)) {
+            WorkshopState state = reopened.loadOrCreate();
+            assertEquals(state.stores().get("Albufeira").getWorkshops().keySet().iterator().next(), "Iniciação à bricolage");
+
+            addWorkshop(state, "Albufeira", "Como pintar. Dia 01/10, 10h");
+            reopened.save(state);
+        }
+        try (WorkshopsRepository reopened = new WorkshopsRepository(path, true, 1 << 20, 1000)) {
+            assertEquals(reopened.loadOrCreate().stores().get("Albufeira").getWorkshops().size(), 2,
+                    "records appended after a torn one stay readable");
+        }
+    }
+
+    @Test
+    public void compactsJournalIntoSnapshot() throws IOException {
+        Path path = Files.createTempDirectory("repo-compact").resolve("workshops.json");
+        Path journal = path.resolveSibling("workshops.json.journal");
+        try (WorkshopsRepository repository = new WorkshopsRepository(path, true, 1 << 20, 3)) {
+            WorkshopState state = repository.loadOrCreate();
+            repository.save(state);
+            for (int i = 0; i < 3; i++) {
+                addWorkshop(state, "Loulé", "Workshop " + i);
+                repository.save(state);
+            }
+        } // close() waits for the background compaction
+
+        assertEquals(Files.size(journal), 0L);
+        assertFalse(Files.exists(path.resolveSibling("workshops.json.tmp")));
+        WorkshopState fromSnapshot = new WorkshopsRepository(path).loadOrCreate();
+        assertEquals(fromSnapshot.stores().get("Loulé").getWorkshops().size(), 3);
+    }
+
+    @Test
+    public void unchangedRunStillRewritesTheSnapshotInFileMode() throws IOException {
+        Path path = Files.createTempDirectory("repo-unchanged").resolve("workshops.json");
+        Path journal = path.resolveSibling("workshops.json.journal");
+        try (WorkshopsRepository repository = new WorkshopsRepository(path, false, 1 << 20, 1000)) {
+            WorkshopState state = repository.loadOrCreate();
+            addWorkshop(state, "Loulé", "Como pintar. Dia 01/10, 10h");
+            WorkshopsRepository.StoreData loule = state.stores().get("Loulé");
+            assertTrue(loule.updateFingerprint(Fingerprint.ofTitles(List.of("Como pintar. Dia 01/10, 10h"))));
+            repository.save(new WorkshopState(state.stores(), "2025-09-01T10:00:00Z"));
+            byte[] snapshot = Files.readAllBytes(path);
+
+            assertFalse(loule.updateFingerprint(Fingerprint.ofTitles(List.of("  Como   pintar. Dia 01/10, 10h"))));
+            loule.setLastChecked("2025-09-02T10:00:00Z");
+            repository.save(new WorkshopState(state.stores(), "2025-09-01T10:00:00Z"));
+            assertNotEquals(Files.readAllBytes(path), snapshot, "the check time must reach the snapshot");
+            assertFalse(Files.exists(journal), "file mode keeps the snapshot self-contained");
+            assertEquals(new WorkshopsRepository(path).loadStore("Loulé").getLastChecked(), "2025-09-02T10:00:00Z");
+
+            addWorkshop(state, "Loulé", "Iniciação à bricolage");
+            assertTrue(loule.updateFingerprint(Fingerprint.ofTitles(List.of("Iniciação à bricolage", "Como pintar. Dia 01/10, 10h"))));
+            repository.save(new WorkshopState(state.stores(), "2025-09-03T10:00:00Z"));
+        }
+
+        WorkshopsRepository.StoreData loule = new WorkshopsRepository(path).loadOrCreate().stores().get("Loulé");
+        assertEquals(loule.getWorkshops().size(), 2);
+        assertEquals(loule.getVersion(), 2L);
+        assertEquals(loule.getFingerprint(), Fingerprint.ofTitles(List.of("Como pintar. Dia 01/10, 10h", "Iniciação à bricolage")));
+    }
+
+    @Test
+    public void journalReplaysFingerprints() throws IOException {
+        Path path = Files.createTempDirectory("repo-fingerprint").resolve("workshops.json");
+        String fingerprint = Fingerprint.ofTitles(List.of("Iniciação à bricolage"));
+        try (WorkshopsRepository repository = new WorkshopsRepository(path, true, 1 << 20, 1000)) {
+            WorkshopState state = repository.loadOrCreate();
+            repository.save(state);
+            addWorkshop(state, "Albufeira", "Iniciação à bricolage");
+            state.stores().get("Albufeira").updateFingerprint(fingerprint);
+            repository.save(state);
+        }
+
+        try (WorkshopsRepository reopened = new WorkshopsRepository(path, true, 1 << 20, 1000)) {
+            WorkshopsRepository.StoreData albufeira = reopened.loadOrCreate().stores().get("Albufeira");
+            assertEquals(albufeira.getFingerprint(), fingerprint);
+            assertEquals(albufeira.getVersion(), 1L);
+        }
+    }
+
+    @Test
+    public void keepsPastWorkshopsWhenTheArchiveCannotBeWritten() throws IOException {
+        Path path = Files.createTempDirectory("repo-archive-failure").resolve("workshops.json");
+        // a directory where the archive file should be: every append fails
+        Files.createDirectory(path.resolveSibling("workshops.json.archive"));
+        try (WorkshopsRepository repository = new WorkshopsRepository(path)) {
+            WorkshopState state = repository.loadOrCreate();
+            WorkshopsRepository.StoreData loule = new WorkshopsRepository.StoreData(new LinkedHashMap<>(), null);
+            state.stores().put("Loulé", loule);
+            Main.addNewTitles(loule, List.of("Como pintar. Dia 01/09, 10h"), "2025-08-25T10:00:00Z");
+            Main.addNewTitles(loule, List.of(), "2025-09-15T10:00:00Z");
+            List<WorkshopEntry> past = loule.removePast(LocalDate.of(2025, 9, 10));
+            assertEquals(past.size(), 1);
+
+            Main.archivePast(repository, state.stores(), Map.of("Loulé", past));
+            repository.save(state);
+        }
+
+        assertEquals(new WorkshopsRepository(path).loadStore("Loulé").getWorkshops().keySet(),
+                Set.of("Como pintar. Dia 01/09, 10h"), "left in the state for a later run to archive");
+    }
+
+    @Test
+    public void archivesPastWorkshopsNoLongerListed() throws IOException {
+        Path path = Files.createTempDirectory("repo-archive").resolve("workshops.json");
+        try (WorkshopsRepository repository = new WorkshopsRepository(path, true, 1 << 20, 1000)) {
+            WorkshopState state = repository.loadOrCreate();
+            WorkshopsRepository.StoreData loule = new WorkshopsRepository.StoreData(new LinkedHashMap<>(), null);
+            state.stores().put("Loulé", loule);
+            Main.addNewTitles(loule, List.of("Como pintar. Dia 01/09, 10h", "Como pintar. Dia 20/09, 10h",
+                    "Iniciação à bricolage. Dia 30/08, 10h"), "2025-08-25T10:00:00Z");
+            loule.setLastChecked("2025-08-25T10:00:00Z");
+            repository.save(state);
+            repository.firstSeenIndex().add("Loulé", "Como pintar. Dia 01/09, 10h", "2025-08-25T10:00:00Z");
+
+            // past but still listed: stays
+            Main.addNewTitles(loule, List.of("Como pintar. Dia 20/09, 10h", "Iniciação à bricolage. Dia 30/08, 10h"),
+                    "2025-09-15T10:00:00Z");
+            List<WorkshopEntry> past = loule.removePast(LocalDate.of(2025, 9, 10));
+            repository.archive("Loulé", past);
+            repository.save(state);
+            assertEquals(repository.firstSeenIndex().size(), 0, "archived workshops leave the index");
+        }
+
+        try (WorkshopsRepository reopened = new WorkshopsRepository(path, true, 1 << 20, 1000)) {
+            WorkshopsRepository.StoreData loule = reopened.loadOrCreate().stores().get("Loulé");
+            assertEquals(loule.getWorkshops().keySet(),
+                    Set.of("Como pintar. Dia 20/09, 10h", "Iniciação à bricolage. Dia 30/08, 10h"));
+            assertEquals(reopened.firstSeenIndex().size(), 2);
+        }
+        List<String> archived = Files.readAllLines(path.resolveSibling("workshops.json.archive"));
+        assertEquals(archived.size(), 1);
+        assertTrue(archived.get(0).contains("\"removedAt\":\"2025-09-15T10:00:00Z\""), archived.get(0));
+    }
+
+    @Test
+    public void writeLockMakesOtherWritersWait() throws Exception {
+        Path path = Files.createTempDirectory("repo-lock").resolve("workshops.json");
+        WorkshopsRepository repository = new WorkshopsRepository(path);
+        WorkshopState state = repository.loadOrCreate();
+        CountDownLatch saved = new CountDownLatch(1);
+        try (WorkshopsRepository.WriteLock lock = repository.lock()) {
+            // saves of the lock holder go through
+            repository.save(state);
+            Thread other = new Thread(() -> {
+                try {
+                    repository.save(state);
+                    saved.countDown();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            other.start();
+            assertFalse(saved.await(300, TimeUnit.MILLISECONDS), "another writer waits for the lock");
+        }
+        assertTrue(saved.await(5, TimeUnit.SECONDS));
+        assertTrue(Files.exists(path.resolveSibling("workshops.json.lock")));
+    }
+
+    @Test
+    public void streamsLargeStateFile() throws IOException {
+        Path path = writeSyntheticState(Files.createTempDirectory("repo-large").resolve("workshops.json"), 20, 5_000);
+        WorkshopsRepository repository = new WorkshopsRepository(path);
+
+        WorkshopState state = repository.loadOrCreate();
+        assertEquals(state.stores().size(), 20);
+        assertEquals(state.stores().get("Store 7").getWorkshops().size(), 5_000);
+        assertEquals(state.stores().get("Store 7").getWorkshops().get("Store 7 workshop 42").firstSeen(),
+                "2025-09-01T00:00:00Z");
+        assertEquals(state.lastUpdated(), "2025-09-02T00:00:00Z");
+
+        WorkshopsRepository.StoreData single = new WorkshopsRepository(path).loadStore("Store 19");
+        assertEquals(single.getWorkshops().size(), 5_000);
+        assertEquals(single.getLastChecked(), "2025-09-02T00:00:00Z");
+        assertNull(new WorkshopsRepository(path).loadStore("Faro"));
+    }
+
+    @Test
+    public void reusesLoadedStateUntilFileChanges() throws IOException {
+        Path path = writeSyntheticState(Files.createTempDirectory("repo-cache").resolve("workshops.json"), 2, 100);
+        WorkshopsRepository repository = new WorkshopsRepository(path);
+
+        WorkshopState first = repository.loadOrCreate();
+        assertSame(repository.loadOrCreate(), first, "unchanged file is not read again");
+
+        addWorkshop(first, "Store 0", "Como pintar. Dia 01/10, 10h");
+        repository.save(first);
+        assertSame(repository.loadOrCreate(), first, "our own save keeps the cached copy valid");
+
+        // another process rewrites the file
+        writeSyntheticState(path, 3, 10);
+        Files.setLastModifiedTime(path, FileTime.from(Instant.now().plusSeconds(5)));
+        WorkshopState reloaded = repository.loadOrCreate();
+        assertNotSame(reloaded, first);
+        assertEquals(reloaded.stores().size(), 3);
+    }
+
+    @Test
+    public void invalidateDropsChangesThatWereNeverSaved() throws IOException {
+        Path path = writeSyntheticState(Files.createTempDirectory("repo-invalidate").resolve("workshops.json"), 1, 10);
+        WorkshopsRepository repository = new WorkshopsRepository(path);
+
+        WorkshopState failedRun = repository.loadOrCreate();
+        addWorkshop(failedRun, "Store 0", "Como pintar. Dia 01/10, 10h");
+        repository.invalidate();
+
+        WorkshopState next = repository.loadOrCreate();
+        assertNotSame(next, failedRun);
+        assertEquals(next.stores().get("Store 0").getWorkshops().size(), 10);
+    }
+
+    private static Path writeSyntheticState(Path path, int stores, int workshopsPerStore) throws IOException {
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("{\"stores\":{");
+            for (int s = 0; s < stores; s++) {
+                out.write((s > 0 ? "," : "") + "\"Store " + s + "\":{\"workshops\":{");
+                for (int w = 0; w < workshopsPerStore; w++) {
+                    String title = "Store " + s + " workshop " + w;
+                    out.write((w > 0 ? "," : "") + "\"" + title + "\":{\"title\":\"" + title
+                            + "\",\"firstSeen\":\"2025-09-01T00:00:00Z\"}");
+                }
+                out.write("},\"lastChecked\":\"2025-09-02T00:00:00Z\"}");
+            }
+            out.write("},\"lastUpdated\":\"2025-09-02T00:00:00Z\"}");
+        }
+        return path;
+    }
+
+    private static void addWorkshop(WorkshopState state, String store, String title) {
+        state.stores()
+                .computeIfAbsent(store, s -> new WorkshopsRepository.StoreData(new LinkedHashMap<>(), null))
+                .getWorkshops()
+                .put(title, new WorkshopEntry(title));
+    }
+}